@@ -1,10 +1,16 @@
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import com.maxmind.db.CHMCache;
+import com.maxmind.db.MaxMindDbParameter;
 import com.maxmind.db.NoCache;
 import com.maxmind.db.NodeCache;
 import com.maxmind.db.Reader.FileMode;
@@ -18,8 +24,19 @@ public class Benchmark {
     private final static int COUNT = 1000000;
     private final static int WARMUPS = 3;
     private final static int BENCHMARKS = 5;
+    private final static int BATCH_SIZE = 1000;
+    private final static int CLUSTER_SIZE = 20;
     private final static boolean TRACE = false;
 
+    public record GeoPoint(
+        @MaxMindDbParameter(name = "latitude") Double latitude,
+        @MaxMindDbParameter(name = "longitude") Double longitude
+    ) {}
+
+    public record Projection(
+        @MaxMindDbParameter(name = "location") GeoPoint location
+    ) {}
+
     public static void main(String[] args) throws GeoIp2Exception, IOException {
         File file = new File(args.length > 0 ? args[0] : "GeoLite2-City.mmdb");
         System.out.println("No caching");
@@ -39,6 +56,10 @@ public class Benchmark {
                 new DatabaseReader.Builder(file).fileMode(FileMode.MEMORY_MAPPED).withCache(cache)
                     .build();
             bench(r, COUNT, i);
+            benchBatch(r, COUNT, i);
+            benchProjection(r, COUNT, i);
+            benchAllocation(r, COUNT, i);
+            benchLocales(file, cache, COUNT, i);
         }
         System.out.println();
     }
@@ -69,4 +90,100 @@ public class Benchmark {
         long qps = count * 1000000000L / duration;
         System.out.println("Requests per second: " + qps);
     }
+
+    private static void benchProjection(DatabaseReader r, int count, int seed)
+        throws IOException {
+        Random random = new Random(seed);
+        long startTime = System.nanoTime();
+        byte[] address = new byte[4];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(address);
+            r.lookup(InetAddress.getByAddress(address), Projection.class);
+        }
+        long endTime = System.nanoTime();
+
+        long duration = endTime - startTime;
+        long qps = count * 1000000000L / duration;
+        System.out.println("Latitude/longitude projections per second: " + qps);
+    }
+
+    private static void benchAllocation(DatabaseReader r, int count, int seed)
+        throws GeoIp2Exception, IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Random random = new Random(seed);
+        InetAddress[] ips = new InetAddress[count];
+        byte[] address = new byte[4];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(address);
+            ips[i] = InetAddress.getByAddress(address);
+        }
+
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        for (InetAddress ip : ips) {
+            r.tryCity(ip);
+        }
+        long endBytes = threads.getThreadAllocatedBytes(threadId);
+        System.out.println("Bytes allocated per tryCity: " + (endBytes - startBytes) / count);
+    }
+
+    // Localization shares the reader's locales with every record, so a
+    // mutable list of several locales should not add to the allocation
+    // reported by benchAllocation.
+    private static void benchLocales(File file, NodeCache cache, int count, int seed)
+        throws GeoIp2Exception, IOException {
+        DatabaseReader r = new DatabaseReader.Builder(file).fileMode(FileMode.MEMORY_MAPPED)
+            .withCache(cache).locales(new ArrayList<>(List.of("de", "fr", "en"))).build();
+        System.out.print("With three locales: ");
+        benchAllocation(r, count, seed);
+    }
+
+    // Addresses from logs are clustered: many requests come from a few
+    // networks. Each batch draws CLUSTER_SIZE addresses from each of several
+    // random /24 networks, as random addresses from the whole IPv4 space
+    // almost never share a network. The same batches are looked up with a
+    // loop over tryCity for comparison.
+    private static void benchBatch(DatabaseReader r, int count, int seed)
+        throws GeoIp2Exception, IOException {
+        Random random = new Random(seed);
+        List<List<InetAddress>> batches = new ArrayList<>();
+        int[] addresses = new int[BATCH_SIZE];
+        for (int i = 0; i < count; i += BATCH_SIZE) {
+            for (int j = 0; j < BATCH_SIZE; j += CLUSTER_SIZE) {
+                int network = random.nextInt() & 0xFFFFFF00;
+                for (int k = j; k < j + CLUSTER_SIZE; k++) {
+                    addresses[k] = network | random.nextInt(256);
+                }
+            }
+            // Sorting groups addresses in the same network together so
+            // that they share a single decoded record.
+            Arrays.sort(addresses);
+            List<InetAddress> batch = new ArrayList<>(BATCH_SIZE);
+            for (int address : addresses) {
+                batch.add(InetAddress.getByAddress(
+                    ByteBuffer.allocate(4).putInt(address).array()));
+            }
+            batches.add(batch);
+        }
+
+        long startTime = System.nanoTime();
+        for (List<InetAddress> batch : batches) {
+            r.tryCityAll(batch);
+        }
+        long endTime = System.nanoTime();
+        long batchQps = count * 1000000000L / (endTime - startTime);
+
+        startTime = System.nanoTime();
+        for (List<InetAddress> batch : batches) {
+            for (InetAddress ip : batch) {
+                r.tryCity(ip);
+            }
+        }
+        endTime = System.nanoTime();
+        long loopQps = count * 1000000000L / (endTime - startTime);
+
+        System.out.println("Clustered batch requests per second: " + batchQps
+            + " (" + loopQps + " with a loop over tryCity)");
+    }
 }
@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import com.maxmind.geoip2.WebServiceClient;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures the client side of Insights requests against a local server that
+ * returns the same response to every request, so that the time and the
+ * allocation of building requests and decoding responses dominate.
+ */
+public class WebServiceBenchmark {
+
+    private final static int COUNT = 20000;
+    private final static int WARMUPS = 3;
+    private final static int BENCHMARKS = 5;
+    private final static int ASYNC_BATCH_SIZE = 64;
+
+    public static void main(String[] args) throws Exception {
+        byte[] body = Files.readAllBytes(
+            Path.of(args.length > 0 ? args[0] : "insights0.json"));
+        // Without this, the server's delayed ACKs add about 40ms to each
+        // request.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type",
+                "application/vnd.maxmind.com-insights+json; charset=UTF-8; version=2.1");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            WebServiceClient client = new WebServiceClient.Builder(42, "license_key")
+                .host("localhost")
+                .port(server.getAddress().getPort())
+                .disableHttps()
+                .build();
+            // A different address for each request, so that none of them
+            // are coalesced or cached.
+            InetAddress[] ips = new InetAddress[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                ips[i] = InetAddress.getByAddress(
+                    ByteBuffer.allocate(4).putInt(0x01000000 + i).array());
+            }
+            loop("Warming up", client, ips, WARMUPS);
+            loop("Benchmarking", client, ips, BENCHMARKS);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void loop(String msg, WebServiceClient client, InetAddress[] ips,
+                             int loops) throws Exception {
+        System.out.println(msg);
+        for (int i = 0; i < loops; i++) {
+            bench(client, ips);
+            benchAsync(client, ips);
+        }
+        System.out.println();
+    }
+
+    private static void bench(WebServiceClient client, InetAddress[] ips)
+        throws GeoIp2Exception, IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (InetAddress ip : ips) {
+            client.insights(ip);
+        }
+        long endTime = System.nanoTime();
+        long endBytes = threads.getThreadAllocatedBytes(threadId);
+
+        long qps = ips.length * 1000000000L / (endTime - startTime);
+        System.out.println("Requests per second: " + qps
+            + ", bytes allocated per request by the caller: "
+            + (endBytes - startBytes) / ips.length);
+    }
+
+    private static void benchAsync(WebServiceClient client, InetAddress[] ips) {
+        int count = ips.length / ASYNC_BATCH_SIZE * ASYNC_BATCH_SIZE;
+        long startTime = System.nanoTime();
+        CompletableFuture<?>[] batch = new CompletableFuture<?>[ASYNC_BATCH_SIZE];
+        for (int i = 0; i < count; i += ASYNC_BATCH_SIZE) {
+            for (int j = 0; j < ASYNC_BATCH_SIZE; j++) {
+                batch[j] = client.insightsAsync(ips[i + j]);
+            }
+            CompletableFuture.allOf(batch).join();
+        }
+        long endTime = System.nanoTime();
+
+        long qps = count * 1000000000L / (endTime - startTime);
+        System.out.println("Asynchronous requests per second: " + qps);
+    }
+}
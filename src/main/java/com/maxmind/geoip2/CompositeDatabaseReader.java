@@ -0,0 +1,271 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.AnonymousIpResponse;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.ConnectionTypeResponse;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ * Looks up an address in several databases with a single call, e.g., to
+ * enrich an event with its location, network owner, connection type, and
+ * anonymizer data. Each database is provided as a {@link DatabaseProvider},
+ * such as a {@link DatabaseReader} or a {@link ReloadingDatabaseReader}, and
+ * is optional.
+ * </p>
+ * <p>
+ * The lookups are skipped for databases that cannot contain the address:
+ * IPv6 addresses are not looked up in IPv4-only {@code DatabaseReader}s, and,
+ * unless disabled with {@link Builder#skipReservedAddresses(boolean)},
+ * loopback, private, link-local, and multicast addresses are not looked up
+ * at all, as the MaxMind databases have no data for them.
+ * </p>
+ * <p>
+ * By default, the databases are searched one after another on the calling
+ * thread. If an {@link Executor} is provided, they are searched in
+ * parallel. This is only worthwhile if the lookups are expensive relative to
+ * handing work to another thread, e.g., with uncached City lookups.
+ * </p>
+ * <p>
+ * This class does not close the providers. It is safe to share across threads
+ * if the providers are.
+ * </p>
+ */
+public final class CompositeDatabaseReader {
+
+    private final DatabaseProvider city;
+    private final DatabaseProvider asn;
+    private final DatabaseProvider connectionType;
+    private final DatabaseProvider anonymousIp;
+    private final Executor executor;
+    private final boolean skipReservedAddresses;
+
+    private CompositeDatabaseReader(Builder builder) {
+        this.city = builder.city;
+        this.asn = builder.asn;
+        this.connectionType = builder.connectionType;
+        this.anonymousIp = builder.anonymousIp;
+        this.executor = builder.executor;
+        this.skipReservedAddresses = builder.skipReservedAddresses;
+    }
+
+    /**
+     * The combined data for an address.
+     *
+     * @param city           The City data, or {@code null} if there is none.
+     * @param asn            The ASN data, or {@code null} if there is none.
+     * @param connectionType The Connection-Type data, or {@code null} if there
+     *                       is none.
+     * @param anonymousIp    The Anonymous IP data, or {@code null} if there is
+     *                       none.
+     */
+    public record Result(
+        CityResponse city,
+        AsnResponse asn,
+        ConnectionTypeResponse connectionType,
+        AnonymousIpResponse anonymousIp
+    ) {
+    }
+
+    private static final Result EMPTY = new Result(null, null, null, null);
+
+    /**
+     * <p>
+     * {@code Builder} creates instances of {@code CompositeDatabaseReader}.
+     * Set a provider for each database you want to look up.
+     * </p>
+     */
+    public static final class Builder {
+        DatabaseProvider city;
+        DatabaseProvider asn;
+        DatabaseProvider connectionType;
+        DatabaseProvider anonymousIp;
+        Executor executor;
+        boolean skipReservedAddresses = true;
+
+        /**
+         * Constructs a builder with no databases.
+         */
+        public Builder() {
+        }
+
+        /**
+         * @param val a provider for a City or Enterprise database
+         * @return Builder object
+         */
+        public Builder city(DatabaseProvider val) {
+            this.city = val;
+            return this;
+        }
+
+        /**
+         * @param val a provider for an ASN database
+         * @return Builder object
+         */
+        public Builder asn(DatabaseProvider val) {
+            this.asn = val;
+            return this;
+        }
+
+        /**
+         * @param val a provider for a Connection-Type database
+         * @return Builder object
+         */
+        public Builder connectionType(DatabaseProvider val) {
+            this.connectionType = val;
+            return this;
+        }
+
+        /**
+         * @param val a provider for an Anonymous IP database
+         * @return Builder object
+         */
+        public Builder anonymousIp(DatabaseProvider val) {
+            this.anonymousIp = val;
+            return this;
+        }
+
+        /**
+         * @param val the executor used to search the databases in parallel.
+         *            By default, they are searched on the calling thread.
+         * @return Builder object
+         */
+        public Builder executor(Executor val) {
+            this.executor = val;
+            return this;
+        }
+
+        /**
+         * @param val whether to return an empty result for loopback,
+         *            private, link-local, and multicast addresses without
+         *            searching the databases. This is enabled by default.
+         *            Disable it if your databases contain such addresses.
+         * @return Builder object
+         */
+        public Builder skipReservedAddresses(boolean val) {
+            this.skipReservedAddresses = val;
+            return this;
+        }
+
+        /**
+         * @return an instance of {@code CompositeDatabaseReader} created from
+         *     the fields set on this builder.
+         */
+        public CompositeDatabaseReader build() {
+            return new CompositeDatabaseReader(this);
+        }
+    }
+
+    /**
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @return The data from each database for the address.
+     * @throws GeoIp2Exception if there is an error looking up the IP
+     * @throws IOException     if there is an IO error
+     * @throws UnsupportedOperationException if a provider's database does not
+     *                                       match the data requested of it.
+     */
+    public Result lookup(InetAddress ipAddress) throws IOException, GeoIp2Exception {
+        if (skipReservedAddresses && isReserved(ipAddress)) {
+            return EMPTY;
+        }
+        if (executor == null) {
+            return new Result(
+                get(city, DatabaseProvider::tryCity, ipAddress),
+                get(asn, DatabaseProvider::tryAsn, ipAddress),
+                get(connectionType, DatabaseProvider::tryConnectionType, ipAddress),
+                get(anonymousIp, DatabaseProvider::tryAnonymousIp, ipAddress)
+            );
+        }
+
+        // The City lookup is usually the most expensive, so it is run on the
+        // calling thread while the others run on the executor.
+        var asnResponse = start(asn, DatabaseProvider::tryAsn, ipAddress);
+        var connectionTypeResponse =
+            start(connectionType, DatabaseProvider::tryConnectionType, ipAddress);
+        var anonymousIpResponse = start(anonymousIp, DatabaseProvider::tryAnonymousIp, ipAddress);
+        var cityResponse = get(city, DatabaseProvider::tryCity, ipAddress);
+        return new Result(
+            cityResponse,
+            join(asnResponse),
+            join(connectionTypeResponse),
+            join(anonymousIpResponse)
+        );
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T> {
+        Optional<T> apply(DatabaseProvider provider, InetAddress ipAddress)
+            throws IOException, GeoIp2Exception;
+    }
+
+    private static <T> T get(DatabaseProvider provider, Lookup<T> lookup, InetAddress ipAddress)
+        throws IOException, GeoIp2Exception {
+        if (!applies(provider, ipAddress)) {
+            return null;
+        }
+        return lookup.apply(provider, ipAddress).orElse(null);
+    }
+
+    private <T> CompletableFuture<T> start(DatabaseProvider provider, Lookup<T> lookup,
+                                           InetAddress ipAddress) {
+        if (!applies(provider, ipAddress)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lookup.apply(provider, ipAddress).orElse(null);
+            } catch (IOException | GeoIp2Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException, GeoIp2Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof GeoIp2Exception geoIp2Exception) {
+                throw geoIp2Exception;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean applies(DatabaseProvider provider, InetAddress ipAddress) {
+        if (provider == null) {
+            return false;
+        }
+        // Looking up an IPv6 address in an IPv4-only database is an error.
+        return !(ipAddress instanceof Inet6Address
+            && provider instanceof DatabaseReader reader
+            && reader.metadata().ipVersion() == 4);
+    }
+
+    private static boolean isReserved(InetAddress ipAddress) {
+        if (ipAddress.isAnyLocalAddress()
+            || ipAddress.isLoopbackAddress()
+            || ipAddress.isLinkLocalAddress()
+            || ipAddress.isSiteLocalAddress()
+            || ipAddress.isMulticastAddress()) {
+            return true;
+        }
+        // IPv6 unique local addresses, fc00::/7
+        return ipAddress instanceof Inet6Address
+            && (ipAddress.getAddress()[0] & 0xFE) == 0xFC;
+    }
+}
@@ -0,0 +1,22 @@
+package com.maxmind.geoip2;
+
+/**
+ * The state of the adaptive concurrency limit enabled with
+ * {@link WebServiceClient.Builder#concurrencyLimit(int)}.
+ *
+ * @param limit    The current number of requests allowed in flight.
+ * @param maxLimit The maximum number of requests allowed in flight, which is
+ *                 also the initial limit.
+ * @param inFlight The number of requests in flight.
+ * @param queued   The number of requests waiting for one in flight to finish.
+ * @param rejected The number of requests that failed because the queue was
+ *                 full.
+ */
+public record ConcurrencyLimitStats(
+    int limit,
+    int maxLimit,
+    int inFlight,
+    int queued,
+    long rejected
+) {
+}
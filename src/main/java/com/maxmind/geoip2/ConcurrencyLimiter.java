@@ -0,0 +1,164 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * An adaptive limit on the number of requests in flight, adjusted by additive
+ * increase and multiplicative decrease. Each request that completes normally
+ * raises the limit by about one per limit's worth of requests. Each request
+ * that indicates overload, such as a server error, a timeout, or a latency of
+ * more than twice the average, lowers it by a tenth. The limit stays between
+ * 1 and the configured maximum, at which it starts.
+ * </p>
+ * <p>
+ * Requests beyond the limit wait in a bounded queue and are started in order
+ * as permits are released. Once the queue is full, further requests fail
+ * immediately.
+ * </p>
+ */
+final class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Weight of each new sample in the average latency
+    private static final double SMOOTHING = 0.1;
+
+    private final int maxLimit;
+    private final int maxQueued;
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+    private double averageLatencyNanos;
+    private long rejected;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    /**
+     * @param maxLimit  The initial and maximum number of requests in flight.
+     * @param maxQueued The number of requests that may wait for a permit.
+     */
+    ConcurrencyLimiter(int maxLimit, int maxQueued) {
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * @return A future that completes once the caller holds a permit, or
+     *     exceptionally with a {@link GeoIp2Exception} if the queue is full.
+     *     The permit must be released with {@link #onSuccess(long)},
+     *     {@link #onDropped()}, or {@link #onIgnore()}.
+     */
+    synchronized CompletableFuture<Void> acquire() {
+        if (inFlight < (int) limit) {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (waiters.size() >= maxQueued) {
+            rejected++;
+            return CompletableFuture.failedFuture(new GeoIp2Exception(
+                "The limit of " + (int) limit + " requests in flight was reached and "
+                    + waiters.size() + " requests are queued"));
+        }
+        var waiter = new CompletableFuture<Void>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    /**
+     * Gives up on a permit returned by {@link #acquire()}, whether or not it
+     * has been granted yet.
+     *
+     * @param permit The future returned by {@link #acquire()}.
+     */
+    void cancel(CompletableFuture<Void> permit) {
+        if (permit.cancel(false)) {
+            // Not granted yet. If dispatch() has already taken it from the
+            // queue, it releases the permit when it fails to complete it.
+            synchronized (this) {
+                waiters.remove(permit);
+            }
+        } else if (!permit.isCompletedExceptionally()) {
+            onIgnore();
+        }
+    }
+
+    /**
+     * Releases a permit after a response was received.
+     *
+     * @param latencyNanos The time taken by the request.
+     */
+    void onSuccess(long latencyNanos) {
+        synchronized (this) {
+            inFlight--;
+            if (averageLatencyNanos > 0
+                && latencyNanos > averageLatencyNanos * LATENCY_TOLERANCE) {
+                decrease();
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            averageLatencyNanos = averageLatencyNanos == 0
+                ? latencyNanos
+                : averageLatencyNanos + (latencyNanos - averageLatencyNanos) * SMOOTHING;
+        }
+        dispatch();
+    }
+
+    /**
+     * Releases a permit after a request failed in a way that indicates that
+     * the service or the connection is overloaded.
+     */
+    void onDropped() {
+        synchronized (this) {
+            inFlight--;
+            decrease();
+        }
+        dispatch();
+    }
+
+    /**
+     * Releases a permit without adjusting the limit.
+     */
+    void onIgnore() {
+        synchronized (this) {
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    /**
+     * @return The current limit and queue.
+     */
+    synchronized ConcurrencyLimitStats stats() {
+        return new ConcurrencyLimitStats((int) limit, maxLimit, inFlight, waiters.size(),
+            rejected);
+    }
+
+    private void decrease() {
+        limit = Math.max(1, limit * BACKOFF_RATIO);
+    }
+
+    // Grants permits to the waiters outside the lock, as completing a waiter
+    // runs the request that was waiting on it.
+    private void dispatch() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                if (inFlight >= (int) limit || waiters.isEmpty()) {
+                    return;
+                }
+                next = waiters.poll();
+                inFlight++;
+            }
+            if (!next.complete(null)) {
+                // Cancelled by the caller
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+}
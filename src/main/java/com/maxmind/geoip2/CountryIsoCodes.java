@@ -0,0 +1,79 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.MaxMindDbParameter;
+
+/**
+ * Support for looking up only the country ISO code of an address. The
+ * records are public so that the database decoder may construct them.
+ */
+final class CountryIsoCodes {
+
+    private static final int LETTERS = 26;
+
+    // All two-letter upper-case codes, so that lookups return a canonical
+    // instance rather than the string created by the decoder.
+    private static final String[] CODES = new String[LETTERS * LETTERS];
+
+    static {
+        for (var i = 0; i < LETTERS; i++) {
+            for (var j = 0; j < LETTERS; j++) {
+                CODES[i * LETTERS + j] =
+                    String.valueOf(new char[] {(char) ('A' + i), (char) ('A' + j)}).intern();
+            }
+        }
+    }
+
+    private CountryIsoCodes() {
+    }
+
+    /**
+     * The top-level data of a Country, City, or Enterprise database, decoding
+     * only the country.
+     *
+     * @param country The country of the address.
+     */
+    public record Data(
+        @MaxMindDbParameter(name = "country")
+        IsoCode country
+    ) {
+    }
+
+    /**
+     * A country, decoding only its ISO code.
+     *
+     * @param isoCode The ISO 3166-1 alpha-2 code of the country.
+     */
+    public record IsoCode(
+        @MaxMindDbParameter(name = "iso_code")
+        String isoCode
+    ) {
+    }
+
+    /**
+     * @param data The decoded data, or {@code null}.
+     * @return The canonical country ISO code, or {@code null} if there is none.
+     */
+    static String isoCode(Data data) {
+        if (data == null || data.country() == null) {
+            return null;
+        }
+        return canonical(data.country().isoCode());
+    }
+
+    /**
+     * @param code A country ISO code, or {@code null}.
+     * @return The canonical instance of the code if it is two upper-case
+     *     letters, or {@code code} itself otherwise.
+     */
+    static String canonical(String code) {
+        if (code == null || code.length() != 2) {
+            return code;
+        }
+        var first = code.charAt(0) - 'A';
+        var second = code.charAt(1) - 'A';
+        if (first < 0 || first >= LETTERS || second < 0 || second >= LETTERS) {
+            return code;
+        }
+        return CODES[first * LETTERS + second];
+    }
+}
@@ -13,6 +13,8 @@ import com.maxmind.geoip2.model.IpRiskResponse;
 import com.maxmind.geoip2.model.IspResponse;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -29,6 +31,25 @@ public interface DatabaseProvider extends GeoIp2Provider {
     Optional<CountryResponse> tryCountry(InetAddress ipAddress) throws IOException,
         GeoIp2Exception;
 
+    /**
+     * Look up a batch of IP addresses in a database that supports Country
+     * lookups.
+     *
+     * @param ipAddresses IPv4 or IPv6 addresses to lookup.
+     * @return A list containing a Country model for each requested IP address or
+     *     empty if it is not in the DB, in the same order as {@code ipAddresses}.
+     * @throws GeoIp2Exception if there is an error looking up an IP
+     * @throws IOException     if there is an IO error
+     */
+    default List<Optional<CountryResponse>> tryCountryAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        var responses = new ArrayList<Optional<CountryResponse>>(ipAddresses.size());
+        for (var ipAddress : ipAddresses) {
+            responses.add(tryCountry(ipAddress));
+        }
+        return responses;
+    }
+
     /**
      * @param ipAddress IPv4 or IPv6 address to lookup.
      * @return A City model for the requested IP address or empty if it is not in the DB.
@@ -38,6 +59,25 @@ public interface DatabaseProvider extends GeoIp2Provider {
     Optional<CityResponse> tryCity(InetAddress ipAddress) throws IOException,
         GeoIp2Exception;
 
+    /**
+     * Look up a batch of IP addresses in a database that supports City
+     * lookups.
+     *
+     * @param ipAddresses IPv4 or IPv6 addresses to lookup.
+     * @return A list containing a City model for each requested IP address or
+     *     empty if it is not in the DB, in the same order as {@code ipAddresses}.
+     * @throws GeoIp2Exception if there is an error looking up an IP
+     * @throws IOException     if there is an IO error
+     */
+    default List<Optional<CityResponse>> tryCityAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        var responses = new ArrayList<Optional<CityResponse>>(ipAddresses.size());
+        for (var ipAddress : ipAddresses) {
+            responses.add(tryCity(ipAddress));
+        }
+        return responses;
+    }
+
     /**
      * Look up an IP address in a GeoIP Anonymous IP.
      *
@@ -23,9 +23,23 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * <p>
@@ -75,20 +89,121 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
 
     private final Reader reader;
 
-    private final List<String> locales;
+    // The number of open DatabaseReaders using the reader. This is shared by
+    // a reader and all of the views created from it with
+    // Builder(DatabaseReader).
+    private final AtomicInteger readerReferences;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final Localizer localizer;
 
     private final int databaseType;
+    // The lookups declared with Builder.databaseType, or null if they are
+    // inferred from the metadata. Inherited by views of the reader.
+    private final Set<DatabaseType> databaseTypes;
+
+    private final ResultCache resultCache;
+
+    private final boolean stacklessAddressNotFound;
+
+    private final CompletableFuture<PreloadResult> preload;
+
+    private final RangeIndex<?> rangeIndex;
+
+    /**
+     * The parts of a memory-mapped database to load into memory when the
+     * reader is opened.
+     */
+    public enum Preload {
+        /**
+         * Load the search tree, which is read by every lookup.
+         */
+        SEARCH_TREE,
+        /**
+         * Load the whole database file, including the data section.
+         */
+        DATABASE
+    }
 
-    private enum DatabaseType {
+    /**
+     * The lookups that may be answered from a range index built with
+     * {@link Builder#rangeIndex(RangeIndexType)}.
+     */
+    public enum RangeIndexType {
+        /**
+         * Country lookups, in a Country, City, or Enterprise database.
+         */
+        COUNTRY(DatabaseType.COUNTRY),
+        /**
+         * ASN lookups, in an ASN database.
+         */
+        ASN(DatabaseType.ASN),
+        /**
+         * Connection-Type lookups, in a Connection-Type database.
+         */
+        CONNECTION_TYPE(DatabaseType.CONNECTION_TYPE),
+        /**
+         * Domain lookups, in a Domain database.
+         */
+        DOMAIN(DatabaseType.DOMAIN);
+
+        final DatabaseType databaseType;
+
+        RangeIndexType(DatabaseType databaseType) {
+            this.databaseType = databaseType;
+        }
+    }
+
+    /**
+     * The kinds of lookup a database supports. Each corresponds to the
+     * methods of {@code DatabaseReader} that return the matching response.
+     * A database that supports {@link #ENTERPRISE} lookups also supports
+     * {@link #CITY} lookups, and one that supports {@link #CITY} lookups
+     * also supports {@link #COUNTRY} lookups.
+     *
+     * @see Builder#databaseType(DatabaseType...)
+     */
+    public enum DatabaseType {
+        /**
+         * Anonymous IP lookups.
+         */
         ANONYMOUS_IP,
+        /**
+         * Anonymous Plus lookups.
+         */
         ANONYMOUS_PLUS,
+        /**
+         * ASN lookups.
+         */
         ASN,
+        /**
+         * City lookups.
+         */
         CITY,
+        /**
+         * Connection-Type lookups.
+         */
         CONNECTION_TYPE,
+        /**
+         * Country lookups.
+         */
         COUNTRY,
+        /**
+         * Domain lookups.
+         */
         DOMAIN,
+        /**
+         * Enterprise lookups.
+         */
         ENTERPRISE,
+        /**
+         * IP Risk lookups.
+         */
         IP_RISK,
+        /**
+         * ISP lookups.
+         */
         ISP;
 
         final int type;
@@ -98,24 +213,176 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         }
     }
 
+    // The lookups supported by the databases MaxMind publishes, by the
+    // database type in their metadata.
+    private static final Map<String, Integer> KNOWN_DATABASE_TYPES = Map.ofEntries(
+        Map.entry("GeoIP2-Anonymous-IP", DatabaseType.ANONYMOUS_IP.type),
+        Map.entry("GeoIP-Anonymous-Plus", DatabaseType.ANONYMOUS_PLUS.type),
+        Map.entry("GeoIP2-IP-Risk", DatabaseType.IP_RISK.type),
+        Map.entry("GeoLite2-ASN", DatabaseType.ASN.type),
+        Map.entry("GeoIP2-City", cityType()),
+        Map.entry("GeoLite2-City", cityType()),
+        Map.entry("GeoIP2-Connection-Type", DatabaseType.CONNECTION_TYPE.type),
+        Map.entry("GeoIP2-Country", DatabaseType.COUNTRY.type),
+        Map.entry("GeoLite2-Country", DatabaseType.COUNTRY.type),
+        Map.entry("GeoIP2-Domain", DatabaseType.DOMAIN.type),
+        Map.entry("GeoIP2-Enterprise", enterpriseType()),
+        Map.entry("GeoIP2-ISP", DatabaseType.ISP.type)
+    );
+
+    private static int cityType() {
+        return DatabaseType.CITY.type | DatabaseType.COUNTRY.type;
+    }
+
+    private static int enterpriseType() {
+        return DatabaseType.ENTERPRISE.type | cityType();
+    }
+
     private DatabaseReader(Builder builder) throws IOException {
         if (builder.stream != null) {
             this.reader = new Reader(builder.stream, builder.cache);
+            this.readerReferences = new AtomicInteger(1);
         } else if (builder.database != null) {
             this.reader = new Reader(builder.database, builder.mode, builder.cache);
+            this.readerReferences = new AtomicInteger(1);
+        } else if (builder.shared != null) {
+            this.reader = builder.shared.reader;
+            this.readerReferences = builder.shared.readerReferences;
+            if (!retainReader()) {
+                throw new IOException("The shared DatabaseReader has been closed");
+            }
         } else {
             // This should never happen. If it does, review the Builder class
             // constructors for errors.
             throw new IllegalArgumentException(
                 "Unsupported Builder configuration: expected either File or URL");
         }
-        this.locales = builder.locales;
+        this.localizer = new Localizer(builder.locales, builder.internNames);
+
+        this.databaseTypes = builder.databaseTypes;
+        try {
+            databaseType = getDatabaseType(builder);
+        } catch (RuntimeException e) {
+            releaseReader();
+            throw e;
+        }
+
+        try {
+            this.preload = startPreload(builder);
+        } catch (IOException e) {
+            releaseReader();
+            throw e;
+        }
+
+        this.stacklessAddressNotFound = builder.stacklessAddressNotFound;
+
+        try {
+            this.rangeIndex = buildRangeIndex(builder);
+        } catch (IOException | RuntimeException e) {
+            releaseReader();
+            throw e;
+        }
+
+        this.resultCache = builder.resultCache;
+        if (this.resultCache != null) {
+            try {
+                this.resultCache.attach();
+            } catch (IllegalArgumentException e) {
+                releaseReader();
+                throw e;
+            }
+        }
+    }
+
+    private boolean retainReader() {
+        while (true) {
+            var count = readerReferences.get();
+            if (count == 0) {
+                return false;
+            }
+            if (readerReferences.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseReader() throws IOException {
+        if (readerReferences.decrementAndGet() == 0) {
+            this.reader.close();
+        }
+    }
+
+    private RangeIndex<?> buildRangeIndex(Builder builder) throws IOException {
+        var type = builder.rangeIndex;
+        if (type == null) {
+            return null;
+        }
+        if ((databaseType & type.databaseType.type) == 0) {
+            throw new IllegalArgumentException(
+                "A " + type + " range index cannot be built from a "
+                    + reader.getMetadata().databaseType() + " database");
+        }
+        var ipv4Only = builder.rangeIndexIpv4Only;
+        return switch (type) {
+            case COUNTRY -> RangeIndex.build(
+                reader, CountryResponse.class, localizer::localize, ipv4Only);
+            case ASN -> RangeIndex.build(
+                reader, AsnResponse.class, UnaryOperator.identity(), ipv4Only);
+            case CONNECTION_TYPE -> RangeIndex.build(
+                reader, ConnectionTypeResponse.class, UnaryOperator.identity(), ipv4Only);
+            case DOMAIN -> RangeIndex.build(
+                reader, DomainResponse.class, UnaryOperator.identity(), ipv4Only);
+        };
+    }
+
+    private CompletableFuture<PreloadResult> startPreload(Builder builder) throws IOException {
+        if (builder.preload == null || builder.database == null
+            || builder.mode != FileMode.MEMORY_MAPPED) {
+            return CompletableFuture.completedFuture(new PreloadResult(0, Duration.ZERO));
+        }
+        var path = builder.database.toPath();
+        // The search tree is at the start of the file.
+        var size = builder.preload == Preload.SEARCH_TREE
+            ? metadata().searchTreeSize() : Long.MAX_VALUE;
+        if (builder.preloadExecutor == null) {
+            return CompletableFuture.completedFuture(preload(path, size));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return preload(path, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, builder.preloadExecutor);
+    }
 
-        databaseType = getDatabaseType();
+    private static PreloadResult preload(Path path, long size) throws IOException {
+        var start = System.nanoTime();
+        var bytesLoaded = PageWarmer.load(path, 0, size);
+        return new PreloadResult(bytesLoaded, Duration.ofNanos(System.nanoTime() - start));
     }
 
-    private int getDatabaseType() {
+    private int getDatabaseType(Builder builder) {
+        if (builder.databaseTypes != null) {
+            var type = 0;
+            for (var databaseType : builder.databaseTypes) {
+                type |= switch (databaseType) {
+                    case CITY -> cityType();
+                    case ENTERPRISE -> enterpriseType();
+                    default -> databaseType.type;
+                };
+            }
+            return type;
+        }
+
         var databaseType = this.metadata().databaseType();
+        var known = KNOWN_DATABASE_TYPES.get(databaseType);
+        if (known != null) {
+            return known;
+        }
+
+        // Other databases, such as regional editions, are recognized by
+        // their name.
         var type = 0;
         if (databaseType.contains("GeoIP2-Anonymous-IP")) {
             type |= DatabaseType.ANONYMOUS_IP.type;
@@ -130,7 +397,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
             type |= DatabaseType.ASN.type;
         }
         if (databaseType.contains("City")) {
-            type |= DatabaseType.CITY.type | DatabaseType.COUNTRY.type;
+            type |= cityType();
         }
         if (databaseType.contains("GeoIP2-Connection-Type")) {
             type |= DatabaseType.CONNECTION_TYPE.type;
@@ -142,15 +409,16 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
             type |= DatabaseType.DOMAIN.type;
         }
         if (databaseType.contains("Enterprise")) {
-            type |=
-                DatabaseType.ENTERPRISE.type | DatabaseType.CITY.type | DatabaseType.COUNTRY.type;
+            type |= enterpriseType();
         }
         if (databaseType.contains("GeoIP2-ISP")) {
             type |= DatabaseType.ISP.type;
         }
         if (type == 0) {
             throw new IllegalArgumentException(
-                "Unsupported database type: " + databaseType);
+                "Unsupported database type: " + databaseType
+                    + ". Use DatabaseReader.Builder.databaseType to declare the lookups it"
+                    + " supports.");
         }
         return type;
     }
@@ -171,10 +439,19 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     public static final class Builder {
         final File database;
         final InputStream stream;
+        final DatabaseReader shared;
 
         List<String> locales = List.of("en");
         FileMode mode = FileMode.MEMORY_MAPPED;
         NodeCache cache = NoCache.getInstance();
+        ResultCache resultCache = null;
+        Set<DatabaseType> databaseTypes = null;
+        boolean internNames = false;
+        boolean stacklessAddressNotFound = false;
+        RangeIndexType rangeIndex = null;
+        boolean rangeIndexIpv4Only = false;
+        Preload preload = null;
+        Executor preloadExecutor = null;
 
         /**
          * @param stream the stream containing the GeoIP database to use.
@@ -182,6 +459,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         public Builder(InputStream stream) {
             this.stream = stream;
             this.database = null;
+            this.shared = null;
         }
 
         /**
@@ -190,6 +468,30 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         public Builder(File database) {
             this.database = database;
             this.stream = null;
+            this.shared = null;
+        }
+
+        /**
+         * Creates a builder for a reader that shares the open database of
+         * another reader, e.g., to look up the same database with different
+         * locales. The database is read, mapped, and cached only once, no
+         * matter how many readers share it. It remains open until all of the
+         * readers sharing it are closed.
+         * <p>
+         * The locales, result cache, and other per-reader options may be set
+         * as usual. The file mode, node cache, and preloading belong to the
+         * shared database and may not be set. The lookups declared with
+         * {@link #databaseType(DatabaseType...)} on the shared reader apply
+         * to the new reader too, unless they are declared again.
+         * </p>
+         *
+         * @param reader the reader whose database to share.
+         */
+        public Builder(DatabaseReader reader) {
+            this.shared = reader;
+            this.database = null;
+            this.stream = null;
+            this.databaseTypes = reader.databaseTypes;
         }
 
         /**
@@ -198,27 +500,166 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
          * @return Builder object
          */
         public Builder locales(List<String> val) {
-            this.locales = val;
+            // An immutable copy is shared, rather than copied, by every
+            // localized record.
+            this.locales = List.copyOf(val);
+            return this;
+        }
+
+        /**
+         * Enables sharing of the {@code names} maps of the returned records.
+         * When enabled, all records with the same GeoName ID returned by the
+         * reader share a single immutable map of names, which reduces the
+         * memory held by responses that are retained, e.g., in a
+         * {@link ResultCache}. The reader keeps the map of every GeoName ID
+         * it has returned until it is closed, so this is best suited to
+         * long-lived readers. By default, names are not shared.
+         *
+         * @param val whether to share the names maps
+         * @return Builder object
+         */
+        public Builder internNames(boolean val) {
+            this.internNames = val;
+            return this;
+        }
+
+        /**
+         * Makes the methods without the "try" prefix throw an
+         * {@link AddressNotFoundException} without a stack trace. Capturing
+         * the stack trace is most of the cost of throwing the exception, so
+         * this is worthwhile if many of the addresses you look up are not in
+         * the database and you do not use the "try" methods. The message of
+         * the exception is the same either way. By default, the exception has
+         * a stack trace.
+         *
+         * @param val whether to omit the stack trace
+         * @return Builder object
+         */
+        public Builder stacklessAddressNotFound(boolean val) {
+            this.stacklessAddressNotFound = val;
+            return this;
+        }
+
+        /**
+         * Declares the lookups the database supports, rather than inferring
+         * them from the database type in its metadata. Use this for databases
+         * you build yourself, e.g., a City database of internal networks,
+         * so that they can be used with the same methods as the MaxMind
+         * databases. Declaring {@link DatabaseType#CITY} also allows Country
+         * lookups, and declaring {@link DatabaseType#ENTERPRISE} also allows
+         * City and Country lookups. The records of the database must have the
+         * structure of the corresponding MaxMind database.
+         *
+         * @param val the lookups the database supports
+         * @return Builder object
+         * @throws IllegalArgumentException if no lookups are provided.
+         */
+        public Builder databaseType(DatabaseType... val) {
+            if (val.length == 0) {
+                throw new IllegalArgumentException("At least one database type is required");
+            }
+            this.databaseTypes = Set.copyOf(Arrays.asList(val));
+            return this;
+        }
+
+        /**
+         * Builds a flat table of the IPv4 networks of the database and their
+         * localized country data when the reader is opened. IPv4 lookups
+         * made with {@link DatabaseReader#country(InetAddress)},
+         * {@link DatabaseReader#tryCountry(InetAddress)}, and
+         * {@link DatabaseReader#countryIsoCode(InetAddress)} are then a
+         * binary search over this table and do not decode any data. Building
+         * the table reads every IPv4 network in the database, which makes
+         * opening the reader slower and uses a few bytes of memory per
+         * network. This is only worthwhile for readers that make many
+         * Country lookups. It may be used with a Country, City, or
+         * Enterprise database. By default, no table is built.
+         * <p>
+         * This is {@link #rangeIndex(RangeIndexType)} with
+         * {@link RangeIndexType#COUNTRY}, limited to the IPv4 networks. It
+         * replaces any range index set earlier.
+         * </p>
+         *
+         * @param val whether to build the table
+         * @return Builder object
+         */
+        public Builder ipv4CountryTable(boolean val) {
+            if (val) {
+                this.rangeIndex = RangeIndexType.COUNTRY;
+                this.rangeIndexIpv4Only = true;
+            } else if (this.rangeIndexIpv4Only) {
+                this.rangeIndex = null;
+                this.rangeIndexIpv4Only = false;
+            }
+            return this;
+        }
+
+        /**
+         * Builds a sorted table of all the networks of the database when the
+         * reader is opened, with the decoded response for each. Lookups of
+         * the given type are then a binary search over this table rather
+         * than a search of the tree, and the responses are decoded only once
+         * per distinct record. The table is stored off-heap, in 8 bytes per
+         * IPv4 network and 20 bytes per IPv6 network; the distinct responses
+         * are kept on the heap. Building the index reads every network in
+         * the database, which makes opening the reader slower. Use
+         * {@link DatabaseReader#rangeIndexStats()} to see the cost. By
+         * default, no index is built.
+         * <p>
+         * IPv6 addresses that MaxMind databases map to IPv4 networks, such as
+         * IPv4-mapped addresses, are still looked up in the database.
+         * </p>
+         *
+         * @param val the lookups to index, or {@code null} for none. The
+         *            database must support them.
+         * @return Builder object
+         */
+        public Builder rangeIndex(RangeIndexType val) {
+            this.rangeIndex = val;
+            this.rangeIndexIpv4Only = false;
             return this;
         }
 
         /**
          * @param cache backing cache instance
          * @return Builder object
+         * @throws IllegalArgumentException if the Builder shares another
+         *     reader's database.
          */
         public Builder withCache(NodeCache cache) {
+            checkNotShared("node cache");
             this.cache = cache;
             return this;
         }
 
+        /**
+         * Enables caching of the final, localized responses by the network
+         * that each lookup matched. Any later lookup of an address within a
+         * cached network is answered from the cache without searching the
+         * database. Unlike {@link #withCache(NodeCache)}, which caches
+         * decoded values inside the database reader, this also skips the
+         * construction of the response objects. By default, no responses
+         * are cached.
+         *
+         * @param val the result cache to use. It must not be in use by
+         *            another reader.
+         * @return Builder object
+         */
+        public Builder withResultCache(ResultCache val) {
+            this.resultCache = val;
+            return this;
+        }
+
         /**
          * @param val The file mode used to open the GeoIP database
          * @return Builder object
          * @throws java.lang.IllegalArgumentException if you initialized the Builder
          *     with an InputStream, which uses {@link FileMode#MEMORY}, but you
-         *     provided a different FileMode to this method.
+         *     provided a different FileMode to this method, or if the Builder
+         *     shares another reader's database.
          */
         public Builder fileMode(FileMode val) {
+            checkNotShared("file mode");
             if (this.stream != null && FileMode.MEMORY != val) {
                 throw new IllegalArgumentException(
                     "Only FileMode.MEMORY is supported when using an InputStream.");
@@ -227,6 +668,53 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
             return this;
         }
 
+        /**
+         * Loads part or all of a memory-mapped database into memory before
+         * {@link #build()} returns. Otherwise, the pages of the file are read
+         * from disk as lookups first touch them, which makes the first
+         * lookups after opening the database slower. This has no effect
+         * with {@link FileMode#MEMORY} or an {@code InputStream}, as the whole
+         * database is then read when it is opened.
+         *
+         * @param val the parts of the database to load
+         * @return Builder object
+         * @throws IllegalArgumentException if the Builder shares another
+         *     reader's database.
+         * @see DatabaseReader#preloadResult()
+         */
+        public Builder preload(Preload val) {
+            checkNotShared("preloading");
+            this.preload = val;
+            this.preloadExecutor = null;
+            return this;
+        }
+
+        /**
+         * Like {@link #preload(Preload)}, but loads the database using the
+         * provided executor rather than before {@link #build()} returns.
+         * Lookups may be made while the database is loading.
+         *
+         * @param val      the parts of the database to load
+         * @param executor the executor to load the database with
+         * @return Builder object
+         * @throws IllegalArgumentException if the Builder shares another
+         *     reader's database.
+         * @see DatabaseReader#preloadResult()
+         */
+        public Builder preload(Preload val, Executor executor) {
+            checkNotShared("preloading");
+            this.preload = val;
+            this.preloadExecutor = executor;
+            return this;
+        }
+
+        private void checkNotShared(String option) {
+            if (this.shared != null) {
+                throw new IllegalArgumentException("The " + option
+                    + " cannot be set for a reader that shares another reader's database.");
+            }
+        }
+
         /**
          * @return an instance of {@code DatabaseReader} created from the
          * fields set on this builder.
@@ -237,7 +725,10 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         }
     }
 
-    static record LookupResult<T>(T model, String ipAddress, Network network) {
+    /**
+     * The result of a lookup.
+     */
+    static record LookupResult<T>(T model, Network network) {
     }
 
     /**
@@ -245,24 +736,74 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
      * @param cls          The class to deserialize to.
      * @param expectedType The expected database type.
      * @param caller       The name of the public method calling this (for error messages).
+     * @param localize     Function applied to a newly decoded response.
      * @return A {@code LookupResult<T>} object with the data for the IP address
      * @throws IOException if there is an error opening or reading from the file.
      */
     private <T> LookupResult<T> get(InetAddress ipAddress, Class<T> cls,
-                                    DatabaseType expectedType, String caller)
+                                    DatabaseType expectedType, String caller,
+                                    UnaryOperator<T> localize)
         throws IOException {
 
+        checkDatabaseType(expectedType, caller);
+
+        return lookup(ipAddress, cls, localize);
+    }
+
+    private void checkDatabaseType(DatabaseType expectedType, String caller) {
         if ((databaseType & expectedType.type) == 0) {
             throw new UnsupportedOperationException(
                 "Invalid attempt to open a " + metadata().databaseType()
                     + " database using the " + caller + " method");
         }
+    }
+
+    /**
+     * Looks up an address, consulting the range index and then the result
+     * cache first if there are any. On a hit, the indexed or cached response
+     * is copied for the requested address; the database is not searched.
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @param cls       The class to deserialize to.
+     * @param localize  Function applied to a newly decoded response.
+     * @return A {@code LookupResult<T>} object with the data for the IP address
+     * @throws IOException if there is an error opening or reading from the file.
+     */
+    private <T> LookupResult<T> lookup(InetAddress ipAddress, Class<T> cls,
+                                       UnaryOperator<T> localize)
+        throws IOException {
+        if (rangeIndex != null && rangeIndex.valueType() == cls) {
+            var entry = rangeIndex.find(ipAddress);
+            if (entry == RangeIndex.NOT_FOUND) {
+                return new LookupResult<>(null, null);
+            }
+            if (entry != RangeIndex.NOT_INDEXED) {
+                var network = rangeIndex.network(entry);
+                var model = Responses.withIpAddress(
+                    cls.cast(rangeIndex.value(entry)), ipAddress, network);
+                return new LookupResult<>(model, network);
+            }
+        }
+        if (resultCache != null) {
+            var cached = resultCache.get(cls, ipAddress);
+            if (cached != null) {
+                var model = Responses.withIpAddress(cls.cast(cached.model()), ipAddress);
+                return new LookupResult<>(model, cached.network());
+            }
+        }
 
         var record = reader.getRecord(ipAddress, cls);
 
         var o = record.data();
+        if (o != null) {
+            o = localize.apply(o);
+        }
+
+        if (resultCache != null && record.network() != null) {
+            resultCache.put(cls, record.network(), o);
+        }
 
-        return new LookupResult<>(o, ipAddress.getHostAddress(), record.network());
+        return new LookupResult<>(o, record.network());
     }
 
     /**
@@ -281,7 +822,28 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         DatabaseType expectedType,
         String caller
     ) throws IOException {
-        var result = this.get(ipAddress, cls, expectedType, caller);
+        return getResponse(ipAddress, cls, expectedType, caller, UnaryOperator.identity());
+    }
+
+    /**
+     * Generic method to get a localized response.
+     *
+     * @param ipAddress    IPv4 or IPv6 address to lookup.
+     * @param cls          The class to deserialize to.
+     * @param expectedType The expected database type.
+     * @param caller       The name of the public method calling this (for error messages).
+     * @param localize     Function applied to a newly decoded response.
+     * @return An Optional containing the response, or empty if not found
+     * @throws IOException if there is an error opening or reading from the file.
+     */
+    private <T> Optional<T> getResponse(
+        InetAddress ipAddress,
+        Class<T> cls,
+        DatabaseType expectedType,
+        String caller,
+        UnaryOperator<T> localize
+    ) throws IOException {
+        var result = this.get(ipAddress, cls, expectedType, caller, localize);
         var response = result.model();
         if (response == null) {
             return Optional.empty();
@@ -289,6 +851,57 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         return Optional.of(response);
     }
 
+    /**
+     * Generic method to get the responses for a batch of addresses. The
+     * database type is checked once for the whole batch, and consecutive
+     * addresses that fall within the network of the previous lookup reuse
+     * its decoded and localized response rather than searching the tree and
+     * decoding the record again.
+     *
+     * @param ipAddresses  IPv4 or IPv6 addresses to lookup.
+     * @param cls          The class to deserialize to.
+     * @param expectedType The expected database type.
+     * @param caller       The name of the public method calling this (for error messages).
+     * @param localize     Function applied to each newly decoded response.
+     * @return A list with one Optional per address, in the same order as
+     *     {@code ipAddresses}.
+     * @throws IOException if there is an error opening or reading from the file.
+     */
+    private <T> List<Optional<T>> getResponses(
+        List<InetAddress> ipAddresses,
+        Class<T> cls,
+        DatabaseType expectedType,
+        String caller,
+        UnaryOperator<T> localize
+    ) throws IOException {
+        checkDatabaseType(expectedType, caller);
+
+        var responses = new ArrayList<Optional<T>>(ipAddresses.size());
+        byte[] lastNetworkAddress = null;
+        var lastPrefixLength = 0;
+        T lastResponse = null;
+        for (var ipAddress : ipAddresses) {
+            if (lastNetworkAddress != null && NetworkMatcher.contains(
+                lastNetworkAddress, lastPrefixLength, ipAddress.getAddress())) {
+                responses.add(Optional.ofNullable(
+                    Responses.withIpAddress(lastResponse, ipAddress)));
+                continue;
+            }
+
+            var result = lookup(ipAddress, cls, localize);
+            lastResponse = result.model();
+            var network = result.network();
+            if (network == null) {
+                lastNetworkAddress = null;
+            } else {
+                lastNetworkAddress = network.networkAddress().getAddress();
+                lastPrefixLength = network.prefixLength();
+            }
+            responses.add(Optional.ofNullable(lastResponse));
+        }
+        return responses;
+    }
+
     /**
      * <p>
      * Closes the database.
@@ -302,52 +915,118 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
      * database file may remain unavailable for rename, replacement, or
      * deletion until the mapped buffer is garbage collected.
      * </p>
+     * <p>
+     * If the database is shared with other readers created with
+     * {@link Builder#Builder(DatabaseReader)}, it is closed once all of them
+     * have been closed. Until then, lookups on a closed reader may continue
+     * to succeed.
+     * </p>
      *
      * @throws IOException if an I/O error occurs.
      */
     @Override
     public void close() throws IOException {
-        this.reader.close();
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (this.resultCache != null) {
+            this.resultCache.detach();
+        }
+        releaseReader();
+    }
+
+    private AddressNotFoundException addressNotFound(InetAddress ipAddress) {
+        return new AddressNotFoundException(ipAddress, !stacklessAddressNotFound);
     }
 
     @Override
     public CountryResponse country(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryCountry(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryCountry(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
     public Optional<CountryResponse> tryCountry(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        var response = getResponse(
+        return getResponse(
             ipAddress,
             CountryResponse.class,
             DatabaseType.COUNTRY,
-            "country"
+            "country",
+            localizer::localize
         );
-        return response.map(r -> new CountryResponse(r, locales));
+    }
+
+    @Override
+    public List<Optional<CountryResponse>> tryCountryAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        return getResponses(
+            ipAddresses,
+            CountryResponse.class,
+            DatabaseType.COUNTRY,
+            "tryCountryAll",
+            localizer::localize
+        );
+    }
+
+    /**
+     * Looks up only the ISO 3166-1 alpha-2 code of the country of an address.
+     * This may be used with a Country, City, or Enterprise database and is
+     * much cheaper than {@link #tryCountry(InetAddress)}, as the names and
+     * the other fields of the record are neither decoded nor localized. The
+     * returned strings are canonical instances that may be compared by
+     * identity. If a {@code NodeCache} is configured, repeated lookups of
+     * the same record reuse the cached decoded data.
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @return The country ISO code, or {@code null} if the address is not in
+     *     the database or has no country.
+     * @throws IOException if there is an error opening or reading from the file.
+     */
+    public String countryIsoCode(InetAddress ipAddress) throws IOException {
+        checkDatabaseType(DatabaseType.COUNTRY, "countryIsoCode");
+        if (rangeIndex != null && rangeIndex.valueType() == CountryResponse.class) {
+            var entry = rangeIndex.find(ipAddress);
+            if (entry != RangeIndex.NOT_INDEXED) {
+                if (entry == RangeIndex.NOT_FOUND) {
+                    return null;
+                }
+                var response = (CountryResponse) rangeIndex.value(entry);
+                return CountryIsoCodes.canonical(response.country().isoCode());
+            }
+        }
+        var data = reader.getRecord(ipAddress, CountryIsoCodes.Data.class).data();
+        return CountryIsoCodes.isoCode(data);
     }
 
     @Override
     public CityResponse city(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryCity(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryCity(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
     public Optional<CityResponse> tryCity(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        var response = getResponse(
+        return getResponse(
             ipAddress,
             CityResponse.class,
             DatabaseType.CITY,
-            "city"
+            "city",
+            localizer::localize
+        );
+    }
+
+    @Override
+    public List<Optional<CityResponse>> tryCityAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        return getResponses(
+            ipAddresses,
+            CityResponse.class,
+            DatabaseType.CITY,
+            "tryCityAll",
+            localizer::localize
         );
-        return response.map(r -> new CityResponse(r, locales));
     }
 
     /**
@@ -361,9 +1040,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public AnonymousIpResponse anonymousIp(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryAnonymousIp(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryAnonymousIp(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -388,9 +1065,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public AnonymousPlusResponse anonymousPlus(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryAnonymousPlus(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryAnonymousPlus(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -417,9 +1092,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public IpRiskResponse ipRisk(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryIpRisk(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryIpRisk(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -439,9 +1112,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public AsnResponse asn(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryAsn(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryAsn(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -461,9 +1132,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public ConnectionTypeResponse connectionType(InetAddress ipAddress)
         throws IOException, GeoIp2Exception {
-        return tryConnectionType(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryConnectionType(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -488,9 +1157,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public DomainResponse domain(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryDomain(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryDomain(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -510,21 +1177,19 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public EnterpriseResponse enterprise(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryEnterprise(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryEnterprise(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
     public Optional<EnterpriseResponse> tryEnterprise(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        var response = getResponse(
+        return getResponse(
             ipAddress,
             EnterpriseResponse.class,
             DatabaseType.ENTERPRISE,
-            "enterprise"
+            "enterprise",
+            localizer::localize
         );
-        return response.map(r -> new EnterpriseResponse(r, locales));
     }
 
     /**
@@ -538,9 +1203,7 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
     @Override
     public IspResponse isp(InetAddress ipAddress) throws IOException,
         GeoIp2Exception {
-        return tryIsp(ipAddress).orElseThrow(() ->
-            new AddressNotFoundException("The address "
-                + ipAddress.getHostAddress() + " is not in the database."));
+        return tryIsp(ipAddress).orElseThrow(() -> addressNotFound(ipAddress));
     }
 
     @Override
@@ -549,6 +1212,122 @@ public class DatabaseReader implements DatabaseProvider, Closeable {
         return getResponse(ipAddress, IspResponse.class, DatabaseType.ISP, "isp");
     }
 
+    /**
+     * <p>
+     * Looks up an address and decodes its data into a class of your choosing,
+     * e.g., a record with only the fields you need. The class is populated in
+     * the same way as the response classes: its constructor parameters are
+     * annotated with {@code com.maxmind.db.MaxMindDbParameter} naming the
+     * keys to decode, and may use nested classes for nested maps.
+     * {@code com.maxmind.db.MaxMindDbIpAddress} and
+     * {@code com.maxmind.db.MaxMindDbNetwork} parameters receive the looked-up
+     * address and the matched network.
+     * </p>
+     * <p>
+     * Only the keys named by the class are decoded; the rest of the record is
+     * skipped without creating any objects. For example, decoding only
+     * {@code country.iso_code} or {@code location.latitude} and
+     * {@code location.longitude} from a City database avoids constructing the
+     * many names maps of a full {@link CityResponse}, which account for most
+     * of the cost of a City lookup. No localization is performed, and the
+     * database type and result cache are not consulted.
+     * </p>
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @param cls       The class to decode the data into.
+     * @param <T>       The type to decode the data into.
+     * @return An Optional containing the decoded data, or empty if the address
+     *     is not in the database.
+     * @throws IOException if there is an error opening or reading from the file.
+     */
+    public <T> Optional<T> lookup(InetAddress ipAddress, Class<T> cls) throws IOException {
+        return Optional.ofNullable(reader.getRecord(ipAddress, cls).data());
+    }
+
+    /**
+     * <p>
+     * Returns every network in the database with its data, in ascending
+     * order of network address. The records are decoded as the stream is
+     * consumed, so scanning the whole database does not hold all of it in
+     * memory. The stream is sequential; call {@link Stream#parallel()} on it
+     * to scan the database on several threads.
+     * </p>
+     * <p>
+     * As with {@link #lookup(InetAddress, Class)}, the records may be decoded
+     * into any class, no localization is performed, and the database type is
+     * not checked. The database must remain open until the stream has been
+     * consumed.
+     * </p>
+     *
+     * @param cls                    The class to decode the data into.
+     * @param includeAliasedNetworks Whether to also return the IPv4 networks
+     *                               of an IPv6 database under the IPv6
+     *                               networks that alias them, such as
+     *                               {@code ::ffff:0:0/96}.
+     * @param <T>                    The type to decode the data into.
+     * @return A stream of the networks and their data.
+     */
+    public <T> Stream<DatabaseRecord<T>> networks(Class<T> cls, boolean includeAliasedNetworks) {
+        return StreamSupport.stream(
+            new NetworkSpliterator<>(reader, cls, includeAliasedNetworks), false);
+    }
+
+    /**
+     * Returns the localized Country data for every network in the database,
+     * in ascending order of network address. The network of each response is
+     * available from {@code traits().network()}. See
+     * {@link #networks(Class, boolean)} for details.
+     *
+     * @param includeAliasedNetworks Whether to include the IPv6 networks that
+     *                               alias the IPv4 networks.
+     * @return A stream of the responses.
+     * @throws UnsupportedOperationException if the database does not support
+     *                                       Country lookups.
+     */
+    public Stream<CountryResponse> countryNetworks(boolean includeAliasedNetworks) {
+        checkDatabaseType(DatabaseType.COUNTRY, "countryNetworks");
+        return networks(CountryResponse.class, includeAliasedNetworks)
+            .map(record -> localizer.localize(record.data()));
+    }
+
+    /**
+     * Returns the localized City data for every network in the database, in
+     * ascending order of network address. The network of each response is
+     * available from {@code traits().network()}. See
+     * {@link #networks(Class, boolean)} for details.
+     *
+     * @param includeAliasedNetworks Whether to include the IPv6 networks that
+     *                               alias the IPv4 networks.
+     * @return A stream of the responses.
+     * @throws UnsupportedOperationException if the database does not support
+     *                                       City lookups.
+     */
+    public Stream<CityResponse> cityNetworks(boolean includeAliasedNetworks) {
+        checkDatabaseType(DatabaseType.CITY, "cityNetworks");
+        return networks(CityResponse.class, includeAliasedNetworks)
+            .map(record -> localizer.localize(record.data()));
+    }
+
+    /**
+     * @return The size and build time of the range index requested with
+     *     {@link Builder#rangeIndex(RangeIndexType)} or
+     *     {@link Builder#ipv4CountryTable(boolean)}, or an empty Optional if
+     *     there is none.
+     */
+    public Optional<RangeIndexStats> rangeIndexStats() {
+        return rangeIndex == null ? Optional.empty() : Optional.of(rangeIndex.stats());
+    }
+
+    /**
+     * @return A future that completes with the number of bytes loaded and the
+     *     time taken once the preloading requested with
+     *     {@link Builder#preload(Preload)} has finished. If no preloading was
+     *     requested or it does not apply, the result reports zero bytes.
+     */
+    public CompletableFuture<PreloadResult> preloadResult() {
+        return preload;
+    }
+
     /**
      * @return the metadata for the open MaxMind DB file.
      */
@@ -0,0 +1,57 @@
+package com.maxmind.geoip2;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Helpers for creating {@link InetAddress} objects from primitive address
+ * representations. None of these perform a name service lookup.
+ */
+final class InetAddresses {
+
+    private InetAddresses() {
+    }
+
+    /**
+     * @param ipv4 The IPv4 address as an int in network byte order, e.g.,
+     *             {@code 0x01020304} for {@code 1.2.3.4}.
+     * @return The address.
+     */
+    static InetAddress fromIpv4(int ipv4) {
+        var bytes = new byte[] {
+            (byte) (ipv4 >>> 24),
+            (byte) (ipv4 >>> 16),
+            (byte) (ipv4 >>> 8),
+            (byte) ipv4,
+        };
+        return fromBytes(bytes);
+    }
+
+    /**
+     * @param high The most significant 64 bits of the IPv6 address.
+     * @param low  The least significant 64 bits of the IPv6 address.
+     * @return The address.
+     */
+    static InetAddress fromIpv6(long high, long low) {
+        var bytes = new byte[16];
+        for (var i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        return fromBytes(bytes);
+    }
+
+    /**
+     * @param address The raw IP address in network byte order.
+     * @return The address.
+     * @throws IllegalArgumentException if the address is not 4 or 16 bytes long.
+     */
+    static InetAddress fromBytes(byte[] address) {
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(
+                "IP address must be 4 or 16 bytes long, got " + address.length, e);
+        }
+    }
+}
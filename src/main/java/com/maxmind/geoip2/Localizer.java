@@ -0,0 +1,148 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import com.maxmind.geoip2.model.EnterpriseResponse;
+import com.maxmind.geoip2.record.City;
+import com.maxmind.geoip2.record.Continent;
+import com.maxmind.geoip2.record.Country;
+import com.maxmind.geoip2.record.RepresentedCountry;
+import com.maxmind.geoip2.record.Subdivision;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies a reader's locales to the responses decoded from its database.
+ * When name interning is enabled, records with the same GeoName ID also share
+ * a single {@code names} map, so responses held by a cache or by the caller
+ * do not each keep their own copy.
+ */
+final class Localizer {
+
+    private final List<String> locales;
+
+    // Names by GeoName ID, or null if names are not interned. GeoName IDs
+    // are unique across continents, countries, subdivisions, and cities, and
+    // each ID has a single set of names within a database.
+    private final ConcurrentHashMap<Long, Map<String, String>> names;
+
+    Localizer(List<String> locales, boolean internNames) {
+        this.locales = locales;
+        this.names = internNames ? new ConcurrentHashMap<>() : null;
+    }
+
+    CountryResponse localize(CountryResponse response) {
+        if (names == null) {
+            return new CountryResponse(response, locales);
+        }
+        return new CountryResponse(
+            localize(response.continent()),
+            localize(response.country()),
+            response.maxmind(),
+            localize(response.registeredCountry()),
+            localize(response.representedCountry()),
+            response.traits()
+        );
+    }
+
+    CityResponse localize(CityResponse response) {
+        if (names == null) {
+            return new CityResponse(response, locales);
+        }
+        return new CityResponse(
+            localize(response.city()),
+            localize(response.continent()),
+            localize(response.country()),
+            response.location(),
+            response.maxmind(),
+            response.postal(),
+            localize(response.registeredCountry()),
+            localize(response.representedCountry()),
+            localize(response.subdivisions()),
+            response.traits()
+        );
+    }
+
+    EnterpriseResponse localize(EnterpriseResponse response) {
+        if (names == null) {
+            return new EnterpriseResponse(response, locales);
+        }
+        return new EnterpriseResponse(
+            localize(response.city()),
+            localize(response.continent()),
+            localize(response.country()),
+            response.location(),
+            response.maxmind(),
+            response.postal(),
+            localize(response.registeredCountry()),
+            localize(response.representedCountry()),
+            localize(response.subdivisions()),
+            response.traits()
+        );
+    }
+
+    private City localize(City city) {
+        return new City(
+            locales,
+            city.confidence(),
+            city.geonameId(),
+            intern(city.geonameId(), city.names())
+        );
+    }
+
+    private Continent localize(Continent continent) {
+        return new Continent(
+            locales,
+            continent.code(),
+            continent.geonameId(),
+            intern(continent.geonameId(), continent.names())
+        );
+    }
+
+    private Country localize(Country country) {
+        return new Country(
+            locales,
+            country.confidence(),
+            country.geonameId(),
+            country.isInEuropeanUnion(),
+            country.isoCode(),
+            intern(country.geonameId(), country.names())
+        );
+    }
+
+    private RepresentedCountry localize(RepresentedCountry country) {
+        return new RepresentedCountry(
+            locales,
+            country.confidence(),
+            country.geonameId(),
+            country.isInEuropeanUnion(),
+            country.isoCode(),
+            intern(country.geonameId(), country.names()),
+            country.type()
+        );
+    }
+
+    private List<Subdivision> localize(List<Subdivision> subdivisions) {
+        var localized = new Subdivision[subdivisions.size()];
+        for (var i = 0; i < localized.length; i++) {
+            var subdivision = subdivisions.get(i);
+            localized[i] = new Subdivision(
+                locales,
+                subdivision.confidence(),
+                subdivision.geonameId(),
+                subdivision.isoCode(),
+                intern(subdivision.geonameId(), subdivision.names())
+            );
+        }
+        return List.of(localized);
+    }
+
+    private Map<String, String> intern(Long geonameId, Map<String, String> names) {
+        if (geonameId == null || names.isEmpty()) {
+            return names;
+        }
+        var interned = this.names.putIfAbsent(geonameId, names);
+        return interned != null ? interned : names;
+    }
+}
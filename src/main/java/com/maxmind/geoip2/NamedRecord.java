@@ -37,9 +37,16 @@ public interface NamedRecord extends JsonSerializable {
      */
     @JsonIgnore
     default String name() {
+        var names = names();
+        if (names.isEmpty()) {
+            return null;
+        }
+        // The names maps of the records are immutable and cannot contain
+        // null values, so a single lookup per locale suffices.
         for (var lang : locales()) {
-            if (names().containsKey(lang)) {
-                return names().get(lang);
+            var name = names.get(lang);
+            if (name != null) {
+                return name;
             }
         }
         return null;
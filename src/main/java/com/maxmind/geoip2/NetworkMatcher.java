@@ -0,0 +1,60 @@
+package com.maxmind.geoip2;
+
+/**
+ * Helpers for testing whether an address falls within a network returned by
+ * the database.
+ */
+final class NetworkMatcher {
+
+    private NetworkMatcher() {
+    }
+
+    /**
+     * @param networkAddress The raw bytes of the network address.
+     * @param prefixLength   The prefix length of the network.
+     * @param address        The raw bytes of the address to test.
+     * @return true if {@code address} is contained in the network. Addresses
+     *     of a different family than the network are never contained in it.
+     */
+    static boolean contains(byte[] networkAddress, int prefixLength, byte[] address) {
+        if (networkAddress.length != address.length) {
+            return false;
+        }
+        var wholeBytes = prefixLength / 8;
+        for (var i = 0; i < wholeBytes; i++) {
+            if (networkAddress[i] != address[i]) {
+                return false;
+            }
+        }
+        var remainingBits = prefixLength % 8;
+        if (remainingBits == 0) {
+            return true;
+        }
+        var mask = (0xFF << (8 - remainingBits)) & 0xFF;
+        return ((networkAddress[wholeBytes] ^ address[wholeBytes]) & mask) == 0;
+    }
+
+    /**
+     * @param address The raw bytes of an address.
+     * @return true if {@code address} is an IPv6 address in one of the
+     *     networks that MaxMind databases alias to their IPv4 networks:
+     *     {@code ::ffff:0:0/96}, {@code 2001::/32}, and {@code 2002::/16}.
+     */
+    static boolean isIpv4Alias(byte[] address) {
+        if (address.length != 16) {
+            return false;
+        }
+        if (address[0] == 0x20 && address[1] == 0x02) {
+            return true;
+        }
+        if (address[0] == 0x20 && address[1] == 0x01 && address[2] == 0 && address[3] == 0) {
+            return true;
+        }
+        for (var i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xFF && address[11] == (byte) 0xFF;
+    }
+}
@@ -0,0 +1,138 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.InvalidNetworkException;
+import com.maxmind.db.Network;
+import com.maxmind.db.Networks;
+import com.maxmind.db.Reader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * A {@link Spliterator} over the networks of a database within a range of
+ * addresses. The records are only decoded as they are consumed. Before
+ * traversal starts, the range may be split in two halves, so that a parallel
+ * stream can scan the database on several threads.
+ * </p>
+ * <p>
+ * A record whose network is larger than the range it is found in is returned
+ * by the range that holds the start of its network only, so that it is not
+ * returned once per half.
+ * </p>
+ */
+final class NetworkSpliterator<T> implements Spliterator<DatabaseRecord<T>> {
+
+    // Ranges are not split further than this many bits below the root. The
+    // smallest ranges are then /16 networks.
+    private static final int MAX_SPLIT_DEPTH = 16;
+
+    private final Reader reader;
+    private final Class<T> cls;
+    private final boolean includeAliasedNetworks;
+
+    private byte[] start;
+    private int prefixLength;
+    private Networks<T> networks;
+
+    /**
+     * @param reader                 The database to iterate over.
+     * @param cls                    The class to decode the records to.
+     * @param includeAliasedNetworks Whether to include the IPv6 networks that
+     *                               alias the IPv4 networks.
+     */
+    NetworkSpliterator(Reader reader, Class<T> cls, boolean includeAliasedNetworks) {
+        this(reader, cls, includeAliasedNetworks,
+            new byte[reader.getMetadata().ipVersion() == 6 ? 16 : 4], 0);
+    }
+
+    private NetworkSpliterator(Reader reader, Class<T> cls, boolean includeAliasedNetworks,
+                               byte[] start, int prefixLength) {
+        this.reader = reader;
+        this.cls = cls;
+        this.includeAliasedNetworks = includeAliasedNetworks;
+        this.start = start;
+        this.prefixLength = prefixLength;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DatabaseRecord<T>> action) {
+        if (networks == null) {
+            networks = open();
+        }
+        while (networks.hasNext()) {
+            var record = networks.next();
+            var address = record.network().networkAddress().getAddress();
+            if (!includeAliasedNetworks && NetworkMatcher.isIpv4Alias(address)) {
+                continue;
+            }
+            if (compare(address, start) < 0) {
+                // Returned by the range holding the start of the network
+                continue;
+            }
+            action.accept(record);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<DatabaseRecord<T>> trySplit() {
+        if (networks != null || prefixLength >= MAX_SPLIT_DEPTH) {
+            return null;
+        }
+        prefixLength++;
+        var lower = new NetworkSpliterator<>(
+            reader, cls, includeAliasedNetworks, start.clone(), prefixLength);
+        var upper = start.clone();
+        var bit = prefixLength - 1;
+        upper[bit / 8] |= (byte) (0x80 >>> (bit % 8));
+        start = upper;
+        return lower;
+    }
+
+    // The number of records is unknown, but each split halves the range, so
+    // the estimate is halved as well. A parallel stream then stops splitting
+    // once the ranges are small enough for its threads, rather than always
+    // splitting down to MAX_SPLIT_DEPTH and walking each range from the root.
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE >>> prefixLength;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+
+    private Networks<T> open() {
+        try {
+            return networksWithin(new Network(InetAddresses.fromBytes(start), prefixLength));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InvalidNetworkException e) {
+            // This should never happen, as the range is within the database.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Networks<T> networksWithin(Network network)
+        throws IOException, InvalidNetworkException {
+        return reader.networksWithin(network, includeAliasedNetworks, cls);
+    }
+
+    // Compares the addresses as unsigned numbers. IPv4 addresses in an IPv6
+    // database are compared as their IPv4-compatible IPv6 addresses.
+    private static int compare(byte[] address, byte[] start) {
+        if (address.length < start.length) {
+            var expanded = new byte[start.length];
+            System.arraycopy(address, 0, expanded, start.length - address.length,
+                address.length);
+            address = expanded;
+        }
+        return Arrays.compareUnsigned(address, start);
+    }
+}
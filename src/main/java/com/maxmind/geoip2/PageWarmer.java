@@ -0,0 +1,40 @@
+package com.maxmind.geoip2;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for loading a database file into the page cache before it is used,
+ * so that the first lookups against a memory-mapped database do not each wait
+ * for a page to be read from disk. The file is mapped separately from the
+ * database reader's own mapping; both share the same pages in the operating
+ * system's page cache.
+ */
+final class PageWarmer {
+
+    private PageWarmer() {
+    }
+
+    /**
+     * @param path     The file to load.
+     * @param position The offset of the first byte to load.
+     * @param size     The maximum number of bytes to load.
+     * @return The number of bytes loaded.
+     * @throws IOException if the file cannot be read.
+     */
+    static long load(Path path, long position, long size) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var length = Math.max(0, Math.min(size, channel.size() - position));
+            var loaded = 0L;
+            while (loaded < length) {
+                // A single mapping is limited to Integer.MAX_VALUE bytes.
+                var chunk = Math.min(length - loaded, Integer.MAX_VALUE);
+                channel.map(FileChannel.MapMode.READ_ONLY, position + loaded, chunk).load();
+                loaded += chunk;
+            }
+            return loaded;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.maxmind.geoip2;
+
+import java.time.Duration;
+
+/**
+ * The outcome of loading a memory-mapped database into memory, as requested
+ * with {@link DatabaseReader.Builder#preload(DatabaseReader.Preload)}.
+ *
+ * @param bytesLoaded The number of bytes of the database file loaded.
+ * @param duration    The time taken to load them.
+ */
+public record PreloadResult(long bytesLoaded, Duration duration) {
+}
@@ -0,0 +1,334 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.InvalidNetworkException;
+import com.maxmind.db.Network;
+import com.maxmind.db.Reader;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>
+ * A sorted table of the networks of a database, stored off-heap, with an
+ * index into the distinct decoded responses for each network. Lookups are a
+ * binary search over the table and do not search the tree or decode any
+ * data. The distinct responses are decoded, and localized if needed, once,
+ * when the index is built.
+ * </p>
+ * <p>
+ * Each IPv4 entry takes 8 bytes: the network address, then the prefix
+ * length in the top byte and the response index in the low three bytes.
+ * Each IPv6 entry takes 20 bytes: the network address as two longs, then
+ * the packed prefix length and response index. Network addresses are
+ * stored with the sign bit flipped, so that signed comparison orders them
+ * as unsigned addresses.
+ * </p>
+ * <p>
+ * IPv6 addresses in the IPv4 subtree of an IPv6 database, or in the
+ * networks that alias it, are not indexed and must be looked up in the
+ * database.
+ * </p>
+ */
+final class RangeIndex<T> {
+
+    /**
+     * Returned by {@link #find(InetAddress)} for addresses that are not in
+     * the database.
+     */
+    static final int NOT_FOUND = -1;
+
+    /**
+     * Returned by {@link #find(InetAddress)} for addresses that are not
+     * covered by the index.
+     */
+    static final int NOT_INDEXED = -2;
+
+    private static final int IPV4_ENTRY_SIZE = 8;
+    private static final int IPV6_ENTRY_SIZE = 20;
+    private static final int MAX_VALUES = 1 << 24;
+
+    private final Class<T> valueType;
+    private final ByteBuffer ipv4;
+    private final int ipv4Count;
+    private final ByteBuffer ipv6;
+    private final int ipv6Count;
+    private final boolean indexesIpv6;
+    // Responses with no IP address or network.
+    private final Object[] values;
+    private final RangeIndexStats stats;
+
+    private RangeIndex(Class<T> valueType, Table ipv4, Table ipv6, boolean indexesIpv6,
+                       Object[] values, Duration buildDuration) {
+        this.valueType = valueType;
+        this.ipv4 = ipv4.trim();
+        this.ipv4Count = ipv4.count;
+        this.ipv6 = ipv6.trim();
+        this.ipv6Count = ipv6.count;
+        this.indexesIpv6 = indexesIpv6;
+        this.values = values;
+        this.stats = new RangeIndexStats(
+            ipv4Count,
+            ipv6Count,
+            values.length,
+            (long) this.ipv4.capacity() + this.ipv6.capacity(),
+            buildDuration
+        );
+    }
+
+    /**
+     * @param reader    The database to build the index from.
+     * @param valueType The response class to decode the records to.
+     * @param localize  Function applied to each distinct response.
+     * @param ipv4Only  Whether to index only the IPv4 networks.
+     * @return The index.
+     * @throws IOException if there is an error reading the database.
+     * @throws IllegalArgumentException if the database has too many distinct
+     *     records to index.
+     */
+    static <T> RangeIndex<T> build(Reader reader, Class<T> valueType,
+                                   UnaryOperator<T> localize, boolean ipv4Only)
+        throws IOException {
+        var start = System.nanoTime();
+        var indexesIpv6 = !ipv4Only && reader.getMetadata().ipVersion() == 6;
+        var root = indexesIpv6
+            ? new Network(InetAddresses.fromIpv6(0, 0), 0)
+            : new Network(InetAddresses.fromIpv4(0), 0);
+
+        var ipv4 = new Table(IPV4_ENTRY_SIZE);
+        var ipv6 = new Table(IPV6_ENTRY_SIZE);
+        var values = new ArrayList<T>();
+        var indexes = new HashMap<T, Integer>();
+        try {
+            // Networks are returned in ascending order. Aliases of the IPv4
+            // subtree are not included.
+            var networks = reader.networksWithin(root, false, valueType);
+            while (networks.hasNext()) {
+                var record = networks.next();
+                // The IP address and network differ for every record, so
+                // they are removed before the responses are deduplicated.
+                var value = Responses.withIpAddress(record.data(), null, null);
+                var index = indexes.get(value);
+                if (index == null) {
+                    index = values.size();
+                    if (index == MAX_VALUES) {
+                        throw new IllegalArgumentException(
+                            "The database has too many distinct records to index");
+                    }
+                    indexes.put(value, index);
+                    values.add(localize.apply(value));
+                }
+
+                var address = record.network().networkAddress().getAddress();
+                var prefixLength = record.network().prefixLength();
+                if (address.length == 16 && prefixLength >= 96 && isIpv4Subtree(address)) {
+                    address = toIpv4(address);
+                    prefixLength -= 96;
+                }
+                var packed = prefixLength << 24 | index;
+                if (address.length == 4) {
+                    var buffer = ipv4.next();
+                    buffer.putInt(toInt(address, 0) ^ Integer.MIN_VALUE);
+                    buffer.putInt(packed);
+                } else if (!ipv4Only) {
+                    var buffer = ipv6.next();
+                    buffer.putLong(toLong(address, 0) ^ Long.MIN_VALUE);
+                    buffer.putLong(toLong(address, 8) ^ Long.MIN_VALUE);
+                    buffer.putInt(packed);
+                }
+            }
+        } catch (InvalidNetworkException e) {
+            // This should never happen, as the network is valid for any
+            // database.
+            throw new IllegalStateException(e);
+        }
+
+        return new RangeIndex<>(valueType, ipv4, ipv6, indexesIpv6, values.toArray(),
+            Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * @return The response class of the index.
+     */
+    Class<T> valueType() {
+        return valueType;
+    }
+
+    /**
+     * @return The size and build time of the index.
+     */
+    RangeIndexStats stats() {
+        return stats;
+    }
+
+    /**
+     * @param ipAddress The address to look up.
+     * @return The entry for the network containing the address,
+     *     {@link #NOT_FOUND} if the address is not in the database, or
+     *     {@link #NOT_INDEXED} if it must be looked up in the database.
+     */
+    int find(InetAddress ipAddress) {
+        if (ipAddress instanceof Inet4Address) {
+            return findIpv4(toInt(ipAddress.getAddress(), 0));
+        }
+        if (!indexesIpv6 || !(ipAddress instanceof Inet6Address)) {
+            return NOT_INDEXED;
+        }
+        var address = ipAddress.getAddress();
+        if (isIpv4Subtree(address) || NetworkMatcher.isIpv4Alias(address)) {
+            return NOT_INDEXED;
+        }
+        var entry = findIpv6(toLong(address, 0), toLong(address, 8));
+        return entry < 0 ? entry : ipv4Count + entry;
+    }
+
+    /**
+     * @param entry An entry returned by {@link #find(InetAddress)}.
+     * @return The response for the entry, with no IP address or network.
+     */
+    T value(int entry) {
+        return valueType.cast(values[packed(entry) & 0xFFFFFF]);
+    }
+
+    /**
+     * @param entry An entry returned by {@link #find(InetAddress)}.
+     * @return The network of the entry.
+     */
+    Network network(int entry) {
+        var prefixLength = packed(entry) >>> 24;
+        if (entry < ipv4Count) {
+            var address = ipv4.getInt(entry * IPV4_ENTRY_SIZE) ^ Integer.MIN_VALUE;
+            return new Network(InetAddresses.fromIpv4(address), prefixLength);
+        }
+        var offset = (entry - ipv4Count) * IPV6_ENTRY_SIZE;
+        var high = ipv6.getLong(offset) ^ Long.MIN_VALUE;
+        var low = ipv6.getLong(offset + 8) ^ Long.MIN_VALUE;
+        return new Network(InetAddresses.fromIpv6(high, low), prefixLength);
+    }
+
+    private int packed(int entry) {
+        if (entry < ipv4Count) {
+            return ipv4.getInt(entry * IPV4_ENTRY_SIZE + 4);
+        }
+        return ipv6.getInt((entry - ipv4Count) * IPV6_ENTRY_SIZE + 16);
+    }
+
+    private int findIpv4(int address) {
+        var key = address ^ Integer.MIN_VALUE;
+        var low = 0;
+        var high = ipv4Count - 1;
+        var found = -1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            if (ipv4.getInt(mid * IPV4_ENTRY_SIZE) <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return NOT_FOUND;
+        }
+        var prefixLength = ipv4.getInt(found * IPV4_ENTRY_SIZE + 4) >>> 24;
+        var mask = prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+        var start = ipv4.getInt(found * IPV4_ENTRY_SIZE) ^ Integer.MIN_VALUE;
+        return (address & mask) == start ? found : NOT_FOUND;
+    }
+
+    private int findIpv6(long addressHigh, long addressLow) {
+        var keyHigh = addressHigh ^ Long.MIN_VALUE;
+        var keyLow = addressLow ^ Long.MIN_VALUE;
+        var low = 0;
+        var high = ipv6Count - 1;
+        var found = -1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var offset = mid * IPV6_ENTRY_SIZE;
+            var startHigh = ipv6.getLong(offset);
+            if (startHigh < keyHigh
+                || startHigh == keyHigh && ipv6.getLong(offset + 8) <= keyLow) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return NOT_FOUND;
+        }
+        var offset = found * IPV6_ENTRY_SIZE;
+        var prefixLength = ipv6.getInt(offset + 16) >>> 24;
+        var startHigh = ipv6.getLong(offset) ^ Long.MIN_VALUE;
+        var startLow = ipv6.getLong(offset + 8) ^ Long.MIN_VALUE;
+        var matches = prefixLength <= 64
+            ? (addressHigh & mask(prefixLength)) == startHigh
+            : addressHigh == startHigh && (addressLow & mask(prefixLength - 64)) == startLow;
+        return matches ? found : NOT_FOUND;
+    }
+
+    private static long mask(int prefixLength) {
+        return prefixLength == 0 ? 0 : -1L << (64 - prefixLength);
+    }
+
+    // ::/96, where an IPv6 database stores the IPv4 networks
+    private static boolean isIpv4Subtree(byte[] address) {
+        for (var i = 0; i < 12; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toIpv4(byte[] address) {
+        return new byte[] {address[12], address[13], address[14], address[15]};
+    }
+
+    private static int toInt(byte[] address, int offset) {
+        return (address[offset] & 0xFF) << 24
+            | (address[offset + 1] & 0xFF) << 16
+            | (address[offset + 2] & 0xFF) << 8
+            | (address[offset + 3] & 0xFF);
+    }
+
+    private static long toLong(byte[] address, int offset) {
+        return (toInt(address, offset) & 0xFFFFFFFFL) << 32
+            | toInt(address, offset + 4) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * A growable table of fixed-size entries in a direct buffer.
+     */
+    private static final class Table {
+        private final int entrySize;
+        private ByteBuffer buffer;
+        private int count;
+
+        Table(int entrySize) {
+            this.entrySize = entrySize;
+            this.buffer = ByteBuffer.allocateDirect(entrySize * 1024);
+        }
+
+        ByteBuffer next() {
+            if (buffer.remaining() < entrySize) {
+                var grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+            count++;
+            return buffer;
+        }
+
+        ByteBuffer trim() {
+            var trimmed = ByteBuffer.allocateDirect(count * entrySize);
+            trimmed.put(buffer.flip());
+            return trimmed.flip();
+        }
+    }
+}
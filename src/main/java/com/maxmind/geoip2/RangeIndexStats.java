@@ -0,0 +1,24 @@
+package com.maxmind.geoip2;
+
+import java.time.Duration;
+
+/**
+ * The size and build time of the range index requested with
+ * {@link DatabaseReader.Builder#rangeIndex(DatabaseReader.RangeIndexType)}.
+ *
+ * @param ipv4Networks   The number of IPv4 networks in the index.
+ * @param ipv6Networks   The number of IPv6 networks in the index.
+ * @param distinctValues The number of distinct responses the networks share.
+ * @param offHeapBytes   The direct memory used by the network table. This
+ *                       does not include the responses, which are kept on
+ *                       the heap.
+ * @param buildDuration  The time taken to build the index.
+ */
+public record RangeIndexStats(
+    int ipv4Networks,
+    int ipv6Networks,
+    int distinctValues,
+    long offHeapBytes,
+    Duration buildDuration
+) {
+}
@@ -0,0 +1,647 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.Metadata;
+import com.maxmind.db.Reader.FileMode;
+import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.model.AnonymousIpResponse;
+import com.maxmind.geoip2.model.AnonymousPlusResponse;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.ConnectionTypeResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import com.maxmind.geoip2.model.DomainResponse;
+import com.maxmind.geoip2.model.EnterpriseResponse;
+import com.maxmind.geoip2.model.IpRiskResponse;
+import com.maxmind.geoip2.model.IspResponse;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * A {@link DatabaseProvider} that can replace its database while it is in
+ * use. Each call to {@link #reload()} opens the database file again using the
+ * {@code DatabaseReader.Builder} passed to the constructor and atomically
+ * swaps the new {@code DatabaseReader} in. This allows you to replace the
+ * database file, e.g., with a weekly update, without restarting your
+ * application or coordinating the change with the threads doing lookups.
+ * </p>
+ * <p>
+ * Lookups never wait for a reload. A lookup that is in progress during a swap
+ * completes against the reader it started with. Each reader is reference
+ * counted and is closed once it has been replaced and its last lookup has
+ * finished.
+ * </p>
+ * <p>
+ * To replace the database, write the new file to a temporary path and rename
+ * it over the old one, then call {@link #reload()}. Do not modify a database
+ * file in place while it is open.
+ * </p>
+ * <p>
+ * Alternatively, {@link #watch(Duration)} starts a background thread that
+ * reloads the database whenever the file is replaced. The new database is
+ * opened, validated, and loaded into memory on that thread before it is
+ * swapped in, so lookups do not see the cost of the reload.
+ * </p>
+ * <p>
+ * This class is safe to share across threads.
+ * </p>
+ */
+public final class ReloadingDatabaseReader implements DatabaseProvider, Closeable {
+
+    private final DatabaseReader.Builder builder;
+    private final Path path;
+    private final AtomicReference<Handle> current;
+    private final Object reloadLock = new Object();
+    // Closes each reader once it has been replaced and its last lookup has
+    // finished. Replaced by tests to simulate a failure to close.
+    ReaderCloser closer = DatabaseReader::close;
+
+    private final AtomicLong swapCount = new AtomicLong();
+    private volatile Duration lastSwapDuration = Duration.ZERO;
+
+    // Guarded by reloadLock
+    private FileState loadedState;
+    private Thread watcher;
+
+    private final AtomicLong failedReloadCount = new AtomicLong();
+    private volatile Exception lastReloadFailure;
+
+    /**
+     * Opens the database using the provided builder. The builder is used
+     * again by each reload.
+     *
+     * @param builder A builder for the database. It must have been
+     *                constructed with a {@code File}.
+     * @throws IOException if there is an error opening or reading from the file.
+     * @throws IllegalArgumentException if the builder was not constructed
+     *                                  with a {@code File} or uses a
+     *                                  {@link ResultCache}.
+     */
+    public ReloadingDatabaseReader(DatabaseReader.Builder builder) throws IOException {
+        if (builder.database == null) {
+            throw new IllegalArgumentException(
+                "A ReloadingDatabaseReader requires a Builder constructed with a File");
+        }
+        if (builder.resultCache != null) {
+            // Old and new readers are open at the same time during a swap,
+            // but a ResultCache may only be used by one reader.
+            throw new IllegalArgumentException(
+                "A ReloadingDatabaseReader does not support a ResultCache");
+        }
+        this.builder = builder;
+        this.path = builder.database.toPath();
+        this.loadedState = FileState.of(path);
+        this.current = new AtomicReference<>(new Handle(builder.build()));
+    }
+
+    /**
+     * Opens the database file again and replaces the current reader with the
+     * new one. Lookups that are in progress complete using the old reader,
+     * which is closed once they have finished. If opening the file fails, the
+     * current reader remains in use.
+     *
+     * @throws IOException if there is an error opening or reading from the
+     *                     file, or if this reader has been closed.
+     */
+    public void reload() throws IOException {
+        if (current.get() == null) {
+            throw new IOException("The ReloadingDatabaseReader has been closed");
+        }
+        var state = FileState.of(path);
+        var start = System.nanoTime();
+        // The database is opened without holding the lock, so that close()
+        // does not wait for it.
+        var reader = builder.build();
+        Handle replaced;
+        synchronized (reloadLock) {
+            if (current.get() == null) {
+                reader.close();
+                throw new IOException("The ReloadingDatabaseReader has been closed");
+            }
+            replaced = publish(reader, start);
+            loadedState = state;
+        }
+        releaseReplaced(replaced);
+    }
+
+    /**
+     * <p>
+     * Starts a background thread that reloads the database whenever the file
+     * is replaced. Changes are detected with a {@code WatchService} on the
+     * file's directory where one is available, and by checking the file's
+     * size and modification time every {@code pollInterval} in any case, as
+     * not all file systems deliver watch events.
+     * </p>
+     * <p>
+     * When the file has changed, the new database is opened and validated:
+     * it must be of the same type as the current database, it must not be
+     * older, and its search tree must not be empty. If it uses
+     * {@code FileMode.MEMORY_MAPPED}, the file is then loaded into memory.
+     * Only then is the new database swapped in. If the file could not be
+     * opened or failed validation, the current database remains in use and
+     * the failure is reported by {@link #failedReloadCount()} and
+     * {@link #lastReloadFailure()}. A file with the same build time as the
+     * current database is not swapped in.
+     * </p>
+     * <p>
+     * The thread stops when this reader is closed.
+     * </p>
+     *
+     * @param pollInterval How often to check the file for changes.
+     * @throws IllegalArgumentException if {@code pollInterval} is not positive.
+     * @throws IllegalStateException if the file is already being watched or
+     *                               this reader has been closed.
+     */
+    public void watch(Duration pollInterval) {
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("pollInterval must be positive");
+        }
+        synchronized (reloadLock) {
+            if (current.get() == null) {
+                throw new IllegalStateException("The ReloadingDatabaseReader has been closed");
+            }
+            if (watcher != null) {
+                throw new IllegalStateException("The database is already being watched");
+            }
+            watcher = new Thread(() -> watchFile(pollInterval),
+                "GeoIP2 database watcher for " + path.getFileName());
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    private void watchFile(Duration pollInterval) {
+        var watchService = newWatchService();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (watchService == null) {
+                    Thread.sleep(pollInterval.toMillis());
+                } else {
+                    // Any event in the directory just triggers an earlier
+                    // check of the file.
+                    var key = watchService.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
+                reloadIfChanged();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // This reader was closed.
+        } finally {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    // Nothing more can be done with it.
+                }
+            }
+        }
+    }
+
+    private WatchService newWatchService() {
+        var directory = path.toAbsolutePath().getParent();
+        WatchService watchService = null;
+        try {
+            watchService = path.getFileSystem().newWatchService();
+            directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            // Fall back to polling.
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ignored) {
+                    // Nothing more can be done with it.
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reloads the database if the file has changed since it was last loaded.
+     *
+     * @return true if a new database was swapped in.
+     */
+    boolean reloadIfChanged() {
+        FileState state;
+        try {
+            state = FileState.of(path);
+        } catch (IOException e) {
+            // The file may be briefly missing while it is being replaced.
+            return false;
+        }
+        Handle loaded;
+        Metadata previous;
+        synchronized (reloadLock) {
+            var handle = current.get();
+            if (handle == null || state.equals(loadedState)) {
+                return false;
+            }
+            // Whatever the outcome, do not try this version of the file again.
+            loadedState = state;
+            loaded = handle;
+            previous = handle.reader.metadata();
+        }
+
+        // The new database is opened, validated, and loaded into memory
+        // without holding the lock, so that close() does not wait for it.
+        var start = System.nanoTime();
+        DatabaseReader reader = null;
+        Handle replaced;
+        try {
+            reader = builder.build();
+            if (!isNewer(previous, reader.metadata())) {
+                reader.close();
+                return false;
+            }
+            if (builder.mode == FileMode.MEMORY_MAPPED && !preloadsDatabase()) {
+                PageWarmer.load(path, 0, Long.MAX_VALUE);
+            }
+            synchronized (reloadLock) {
+                var handle = current.get();
+                // The reader may have been closed, or reloaded by reload(),
+                // in the meantime.
+                if (handle == null
+                    || handle != loaded
+                    && !isNewer(handle.reader.metadata(), reader.metadata())) {
+                    reader.close();
+                    return false;
+                }
+                replaced = publish(reader, start);
+            }
+        } catch (IOException | RuntimeException e) {
+            failedReloadCount.incrementAndGet();
+            lastReloadFailure = e;
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // The failure has already been recorded.
+                }
+            }
+            return false;
+        }
+        // Outside the try, as the new reader is now in use and must not be
+        // closed if closing the old one fails.
+        releaseReplaced(replaced);
+        return true;
+    }
+
+    private boolean preloadsDatabase() {
+        return builder.preload == DatabaseReader.Preload.DATABASE
+            && builder.preloadExecutor == null;
+    }
+
+    /**
+     * @return false if {@code next} has the same build time as
+     *     {@code previous}.
+     * @throws IOException if {@code next} is not a valid replacement for
+     *                     {@code previous}.
+     */
+    private static boolean isNewer(Metadata previous, Metadata next) throws IOException {
+        if (!Objects.equals(previous.databaseType(), next.databaseType())) {
+            throw new IOException("The new database is a " + next.databaseType()
+                + " database, but the current database is a " + previous.databaseType()
+                + " database");
+        }
+        if (next.nodeCount() <= 0) {
+            throw new IOException("The new database has an empty search tree");
+        }
+        var comparison = next.buildEpoch().compareTo(previous.buildEpoch());
+        if (comparison < 0) {
+            throw new IOException("The new database was built at " + next.buildEpoch()
+                + ", before the current database, which was built at "
+                + previous.buildEpoch());
+        }
+        return comparison > 0;
+    }
+
+    /**
+     * @return The number of times that a change to the file was detected by
+     *     {@link #watch(Duration)} but the new database could not be opened or
+     *     failed validation.
+     */
+    public long failedReloadCount() {
+        return failedReloadCount.get();
+    }
+
+    /**
+     * @return The exception from the most recent failed reload by
+     *     {@link #watch(Duration)}, or {@code null} if there has been none.
+     */
+    public Exception lastReloadFailure() {
+        return lastReloadFailure;
+    }
+
+    // Must be called while holding reloadLock. Returns the replaced handle,
+    // which the caller must release with releaseReplaced() once the lock is
+    // no longer held.
+    private Handle publish(DatabaseReader reader, long start) {
+        var previous = current.getAndSet(new Handle(reader));
+        lastSwapDuration = Duration.ofNanos(System.nanoTime() - start);
+        swapCount.incrementAndGet();
+        return previous;
+    }
+
+    // The swap has already happened, so a failure to close the old reader
+    // neither undoes it nor counts as a failed reload.
+    private static void releaseReplaced(Handle replaced) {
+        try {
+            replaced.release();
+        } catch (IOException e) {
+            // Nothing more can be done with it.
+        }
+    }
+
+    /**
+     * @return The number of times the database has been replaced.
+     */
+    public long swapCount() {
+        return swapCount.get();
+    }
+
+    /**
+     * @return The time taken by the most recent replacement of the database,
+     *     including opening the new file, or zero if it has not been replaced.
+     */
+    public Duration lastSwapDuration() {
+        return lastSwapDuration;
+    }
+
+    /**
+     * @return the metadata for the MaxMind DB file currently in use.
+     * @throws IOException if this reader has been closed.
+     */
+    public Metadata metadata() throws IOException {
+        return withReader(DatabaseReader::metadata);
+    }
+
+    /**
+     * Closes the current database. Lookups that are in progress complete
+     * before the underlying reader is closed. Lookups started after this
+     * method is called throw an {@code IOException}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (reloadLock) {
+            if (watcher != null) {
+                watcher.interrupt();
+            }
+            var previous = current.getAndSet(null);
+            if (previous != null) {
+                previous.release();
+            }
+        }
+    }
+
+    private Handle acquire() throws IOException {
+        while (true) {
+            var handle = current.get();
+            if (handle == null) {
+                throw new IOException("The ReloadingDatabaseReader has been closed");
+            }
+            if (handle.acquire()) {
+                return handle;
+            }
+            // The handle was released by a concurrent swap. The new one is
+            // already published.
+        }
+    }
+
+    private <T, E extends Exception> T withReader(Lookup<T, E> lookup) throws IOException, E {
+        var handle = acquire();
+        try {
+            return lookup.apply(handle.reader);
+        } finally {
+            handle.release();
+        }
+    }
+
+    private record FileState(FileTime lastModified, long size, Object fileKey) {
+        static FileState of(Path path) throws IOException {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileState(attributes.lastModifiedTime(), attributes.size(),
+                attributes.fileKey());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T, E extends Exception> {
+        T apply(DatabaseReader reader) throws IOException, E;
+    }
+
+    @FunctionalInterface
+    interface ReaderCloser {
+        void close(DatabaseReader reader) throws IOException;
+    }
+
+    /**
+     * A reader and the number of references to it. The reference held while
+     * it is the current reader counts as one.
+     */
+    private final class Handle {
+        private final DatabaseReader reader;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Handle(DatabaseReader reader) {
+            this.reader = reader;
+        }
+
+        boolean acquire() {
+            while (true) {
+                var count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() throws IOException {
+            if (references.decrementAndGet() == 0) {
+                closer.close(reader);
+            }
+        }
+    }
+
+    /**
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @return The country ISO code, or {@code null} if the address is not in
+     *     the database or has no country.
+     * @throws IOException if there is an error opening or reading from the file.
+     * @see DatabaseReader#countryIsoCode(InetAddress)
+     */
+    public String countryIsoCode(InetAddress ipAddress) throws IOException {
+        return withReader(r -> r.countryIsoCode(ipAddress));
+    }
+
+    /**
+     * @param ipAddress IPv4 or IPv6 address to lookup.
+     * @param cls       The class to decode the data into.
+     * @param <T>       The type to decode the data into.
+     * @return An Optional containing the decoded data, or empty if the address
+     *     is not in the database.
+     * @throws IOException if there is an error opening or reading from the file.
+     * @see DatabaseReader#lookup(InetAddress, Class)
+     */
+    public <T> Optional<T> lookup(InetAddress ipAddress, Class<T> cls) throws IOException {
+        return withReader(r -> r.lookup(ipAddress, cls));
+    }
+
+    @Override
+    public CountryResponse country(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.country(ipAddress));
+    }
+
+    @Override
+    public Optional<CountryResponse> tryCountry(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryCountry(ipAddress));
+    }
+
+    @Override
+    public List<Optional<CountryResponse>> tryCountryAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        return withReader(r -> r.tryCountryAll(ipAddresses));
+    }
+
+    @Override
+    public CityResponse city(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.city(ipAddress));
+    }
+
+    @Override
+    public Optional<CityResponse> tryCity(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryCity(ipAddress));
+    }
+
+    @Override
+    public List<Optional<CityResponse>> tryCityAll(List<InetAddress> ipAddresses)
+        throws IOException, GeoIp2Exception {
+        return withReader(r -> r.tryCityAll(ipAddresses));
+    }
+
+    @Override
+    public AnonymousIpResponse anonymousIp(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.anonymousIp(ipAddress));
+    }
+
+    @Override
+    public Optional<AnonymousIpResponse> tryAnonymousIp(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryAnonymousIp(ipAddress));
+    }
+
+    @Override
+    public AnonymousPlusResponse anonymousPlus(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.anonymousPlus(ipAddress));
+    }
+
+    @Override
+    public Optional<AnonymousPlusResponse> tryAnonymousPlus(InetAddress ipAddress)
+        throws IOException, GeoIp2Exception {
+        return withReader(r -> r.tryAnonymousPlus(ipAddress));
+    }
+
+    @Override
+    public IpRiskResponse ipRisk(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.ipRisk(ipAddress));
+    }
+
+    @Override
+    public Optional<IpRiskResponse> tryIpRisk(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryIpRisk(ipAddress));
+    }
+
+    @Override
+    public AsnResponse asn(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.asn(ipAddress));
+    }
+
+    @Override
+    public Optional<AsnResponse> tryAsn(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryAsn(ipAddress));
+    }
+
+    @Override
+    public ConnectionTypeResponse connectionType(InetAddress ipAddress)
+        throws IOException, GeoIp2Exception {
+        return withReader(r -> r.connectionType(ipAddress));
+    }
+
+    @Override
+    public Optional<ConnectionTypeResponse> tryConnectionType(InetAddress ipAddress)
+        throws IOException, GeoIp2Exception {
+        return withReader(r -> r.tryConnectionType(ipAddress));
+    }
+
+    @Override
+    public DomainResponse domain(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.domain(ipAddress));
+    }
+
+    @Override
+    public Optional<DomainResponse> tryDomain(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryDomain(ipAddress));
+    }
+
+    @Override
+    public EnterpriseResponse enterprise(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.enterprise(ipAddress));
+    }
+
+    @Override
+    public Optional<EnterpriseResponse> tryEnterprise(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryEnterprise(ipAddress));
+    }
+
+    @Override
+    public IspResponse isp(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.isp(ipAddress));
+    }
+
+    @Override
+    public Optional<IspResponse> tryIsp(InetAddress ipAddress) throws IOException,
+        GeoIp2Exception {
+        return withReader(r -> r.tryIsp(ipAddress));
+    }
+}
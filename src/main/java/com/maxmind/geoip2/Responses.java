@@ -0,0 +1,303 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.Network;
+import com.maxmind.geoip2.model.AnonymousIpResponse;
+import com.maxmind.geoip2.model.AnonymousPlusResponse;
+import com.maxmind.geoip2.model.AsnResponse;
+import com.maxmind.geoip2.model.CityResponse;
+import com.maxmind.geoip2.model.ConnectionTypeResponse;
+import com.maxmind.geoip2.model.CountryResponse;
+import com.maxmind.geoip2.model.DomainResponse;
+import com.maxmind.geoip2.model.EnterpriseResponse;
+import com.maxmind.geoip2.model.InsightsResponse;
+import com.maxmind.geoip2.model.IpRiskResponse;
+import com.maxmind.geoip2.model.IspResponse;
+import com.maxmind.geoip2.record.Traits;
+import java.net.InetAddress;
+
+/**
+ * Helpers for reusing a response decoded for one address as the response for
+ * another address in the same network. Everything but the IP address is
+ * shared between the two responses.
+ */
+final class Responses {
+
+    private Responses() {
+    }
+
+    /**
+     * @param response  A response returned by the database, or {@code null}.
+     * @param ipAddress The address the returned response should be for.
+     * @return A response equal to {@code response} except for the IP address,
+     *     or {@code response} itself if it does not need to change.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T withIpAddress(T response, InetAddress ipAddress) {
+        Object rebound;
+        if (response instanceof CityResponse r) {
+            rebound = ipAddress.equals(r.traits().ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof CountryResponse r) {
+            rebound = ipAddress.equals(r.traits().ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof EnterpriseResponse r) {
+            rebound = ipAddress.equals(r.traits().ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof InsightsResponse r) {
+            rebound = ipAddress.equals(r.traits().ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof AnonymousIpResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof AnonymousPlusResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof AsnResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof ConnectionTypeResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof DomainResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof IpRiskResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else if (response instanceof IspResponse r) {
+            rebound = ipAddress.equals(r.ipAddress()) ? r : withIpAddress(r, ipAddress);
+        } else {
+            // null, or a type without an IP address
+            rebound = response;
+        }
+        return (T) rebound;
+    }
+
+    /**
+     * @param response  A response returned by the database, or {@code null}.
+     * @param ipAddress The address the returned response should be for.
+     * @param network   The network the returned response should be for.
+     * @return A response equal to {@code response} except for the IP address
+     *     and network.
+     * @throws IllegalArgumentException if the response type does not have a
+     *     network.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T withIpAddress(T response, InetAddress ipAddress, Network network) {
+        Object rebound;
+        if (response instanceof CityResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response instanceof CountryResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response instanceof EnterpriseResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response instanceof AsnResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response instanceof ConnectionTypeResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response instanceof DomainResponse r) {
+            rebound = withIpAddress(r, ipAddress, network);
+        } else if (response == null) {
+            rebound = null;
+        } else {
+            throw new IllegalArgumentException(
+                "Unsupported response type: " + response.getClass().getName());
+        }
+        return (T) rebound;
+    }
+
+    static CityResponse withIpAddress(CityResponse response, InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.traits().network());
+    }
+
+    static CityResponse withIpAddress(CityResponse response, InetAddress ipAddress,
+                                      Network network) {
+        return new CityResponse(
+            response.city(),
+            response.continent(),
+            response.country(),
+            response.location(),
+            response.maxmind(),
+            response.postal(),
+            response.registeredCountry(),
+            response.representedCountry(),
+            response.subdivisions(),
+            withIpAddress(response.traits(), ipAddress, network)
+        );
+    }
+
+    static CountryResponse withIpAddress(CountryResponse response, InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.traits().network());
+    }
+
+    static CountryResponse withIpAddress(CountryResponse response, InetAddress ipAddress,
+                                         Network network) {
+        return new CountryResponse(
+            response.continent(),
+            response.country(),
+            response.maxmind(),
+            response.registeredCountry(),
+            response.representedCountry(),
+            withIpAddress(response.traits(), ipAddress, network)
+        );
+    }
+
+    static EnterpriseResponse withIpAddress(EnterpriseResponse response,
+                                            InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.traits().network());
+    }
+
+    static EnterpriseResponse withIpAddress(EnterpriseResponse response,
+                                            InetAddress ipAddress, Network network) {
+        return new EnterpriseResponse(
+            response.city(),
+            response.continent(),
+            response.country(),
+            response.location(),
+            response.maxmind(),
+            response.postal(),
+            response.registeredCountry(),
+            response.representedCountry(),
+            response.subdivisions(),
+            withIpAddress(response.traits(), ipAddress, network)
+        );
+    }
+
+    static InsightsResponse withIpAddress(InsightsResponse response, InetAddress ipAddress) {
+        return new InsightsResponse(
+            response.anonymizer(),
+            response.city(),
+            response.continent(),
+            response.country(),
+            response.location(),
+            response.maxmind(),
+            response.postal(),
+            response.registeredCountry(),
+            response.representedCountry(),
+            response.subdivisions(),
+            withIpAddress(response.traits(), ipAddress)
+        );
+    }
+
+    @SuppressWarnings("removal")
+    static AnonymousIpResponse withIpAddress(AnonymousIpResponse response,
+                                             InetAddress ipAddress) {
+        return new AnonymousIpResponse(
+            ipAddress,
+            response.isAnonymous(),
+            response.isAnonymousVpn(),
+            response.isHostingProvider(),
+            response.isPublicProxy(),
+            response.isResidentialProxy(),
+            response.isTorExitNode(),
+            response.network()
+        );
+    }
+
+    static AnonymousPlusResponse withIpAddress(AnonymousPlusResponse response,
+                                               InetAddress ipAddress) {
+        return new AnonymousPlusResponse(
+            ipAddress,
+            response.isAnonymous(),
+            response.isAnonymousVpn(),
+            response.isHostingProvider(),
+            response.isPublicProxy(),
+            response.isResidentialProxy(),
+            response.isTorExitNode(),
+            response.network(),
+            response.anonymizerConfidence(),
+            response.networkLastSeen(),
+            response.providerName()
+        );
+    }
+
+    static AsnResponse withIpAddress(AsnResponse response, InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.network());
+    }
+
+    static AsnResponse withIpAddress(AsnResponse response, InetAddress ipAddress,
+                                     Network network) {
+        return new AsnResponse(
+            response.autonomousSystemNumber(),
+            response.autonomousSystemOrganization(),
+            ipAddress,
+            network
+        );
+    }
+
+    static ConnectionTypeResponse withIpAddress(ConnectionTypeResponse response,
+                                                InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.network());
+    }
+
+    static ConnectionTypeResponse withIpAddress(ConnectionTypeResponse response,
+                                                InetAddress ipAddress, Network network) {
+        return new ConnectionTypeResponse(
+            response.connectionType(),
+            ipAddress,
+            network
+        );
+    }
+
+    static DomainResponse withIpAddress(DomainResponse response, InetAddress ipAddress) {
+        return withIpAddress(response, ipAddress, response.network());
+    }
+
+    static DomainResponse withIpAddress(DomainResponse response, InetAddress ipAddress,
+                                        Network network) {
+        return new DomainResponse(
+            response.domain(),
+            ipAddress,
+            network
+        );
+    }
+
+    static IpRiskResponse withIpAddress(IpRiskResponse response, InetAddress ipAddress) {
+        return new IpRiskResponse(
+            ipAddress,
+            response.isAnonymous(),
+            response.isAnonymousVpn(),
+            response.isHostingProvider(),
+            response.isPublicProxy(),
+            response.isResidentialProxy(),
+            response.isTorExitNode(),
+            response.network(),
+            response.ipRisk()
+        );
+    }
+
+    static IspResponse withIpAddress(IspResponse response, InetAddress ipAddress) {
+        return new IspResponse(
+            response.autonomousSystemNumber(),
+            response.autonomousSystemOrganization(),
+            ipAddress,
+            response.isp(),
+            response.mobileCountryCode(),
+            response.mobileNetworkCode(),
+            response.organization(),
+            response.network()
+        );
+    }
+
+    static Traits withIpAddress(Traits traits, InetAddress ipAddress) {
+        return withIpAddress(traits, ipAddress, traits.network());
+    }
+
+    @SuppressWarnings("removal")
+    static Traits withIpAddress(Traits traits, InetAddress ipAddress, Network network) {
+        return new Traits(
+            traits.autonomousSystemNumber(),
+            traits.autonomousSystemOrganization(),
+            traits.connectionType(),
+            traits.domain(),
+            ipAddress,
+            traits.isAnonymous(),
+            traits.isAnonymousVpn(),
+            traits.isAnycast(),
+            traits.isHostingProvider(),
+            traits.isLegitimateProxy(),
+            traits.isPublicProxy(),
+            traits.isResidentialProxy(),
+            traits.isTorExitNode(),
+            traits.ipRiskSnapshot(),
+            traits.isp(),
+            traits.mobileCountryCode(),
+            traits.mobileNetworkCode(),
+            network,
+            traits.organization(),
+            traits.userType(),
+            traits.userCount(),
+            traits.staticIpScore()
+        );
+    }
+}
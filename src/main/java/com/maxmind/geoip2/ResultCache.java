@@ -0,0 +1,482 @@
+package com.maxmind.geoip2;
+
+import com.maxmind.db.Network;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A bounded cache of final, already-localized responses keyed by the network
+ * that the lookup matched. Any address within a cached network is answered
+ * from the cache without searching the database or decoding the record. This
+ * is most useful when the looked-up addresses are highly skewed towards a
+ * small number of networks.
+ * </p>
+ * <p>
+ * Lookups that find no data are cached as well, so repeated lookups of
+ * private or reserved addresses are also answered from the cache.
+ * </p>
+ * <p>
+ * A {@code ResultCache} may only be used by one {@code DatabaseReader} or
+ * {@code WebServiceClient} at a time, as the cached responses depend on the
+ * database and the locales of the reader. Closing the reader clears the cache
+ * and allows it to be reused.
+ * </p>
+ * <p>
+ * Entries may be given a time to live, after which they are no longer
+ * returned. This is useful with the web services, whose data changes
+ * continually.
+ * </p>
+ * <p>
+ * This class is safe to use across threads. Lookups do not take a lock, so
+ * that threads answered from the cache do not contend with each other.
+ * </p>
+ */
+public final class ResultCache {
+
+    /**
+     * The policy used to choose which entry to discard once the cache is
+     * full.
+     */
+    public enum Eviction {
+        /**
+         * Discard an entry that has not been used recently. Recency is
+         * approximated with the CLOCK algorithm, which gives each entry used
+         * since the last eviction a second chance, so that lookups need not
+         * reorder the entries.
+         */
+        LRU,
+        /**
+         * Discard the entry chosen by {@link #LRU}, but only if the new entry
+         * has been requested more often than it. Request frequencies are
+         * tracked with a compact sketch. This prevents a scan over many
+         * rarely-seen networks from flushing the frequently-seen ones out of
+         * the cache.
+         */
+        TINY_LFU
+    }
+
+    /**
+     * A cached response along with the network it applies to.
+     *
+     * @param model     The cached response, or {@code null} if the network
+     *                  has no data.
+     * @param network   The network that the response applies to.
+     * @param expiresAt The {@link System#nanoTime()} at which the entry
+     *                  expires. Ignored if the cache has no time to live.
+     */
+    record Entry(Object model, Network network, long expiresAt) {
+    }
+
+    private final int maxSize;
+    // Zero if entries do not expire
+    private final long timeToLiveNanos;
+    // Read without the lock. Changed only while holding it.
+    private final ConcurrentHashMap<Key, Node> entries;
+    private final FrequencySketch sketch;
+
+    // The number of cached networks for each prefix length. Only prefix
+    // lengths with at least one cached network need to be probed.
+    private final AtomicIntegerArray ipv4PrefixCounts = new AtomicIntegerArray(33);
+    private final AtomicIntegerArray ipv6PrefixCounts = new AtomicIntegerArray(129);
+    // The number of cached networks for each slot of a table indexed by key
+    // hash. A prefix length whose slot for the address is empty has no
+    // cached network containing it, so the map is not probed.
+    private final AtomicIntegerArray networkCounts;
+    private final int networkMask;
+
+    // Guards the changes to the entries, the clock and the sketch
+    private final ReentrantLock lock = new ReentrantLock();
+    // The entries in the order that the CLOCK hand visits them
+    private final ArrayDeque<Node> clock = new ArrayDeque<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final AtomicBoolean attached = new AtomicBoolean();
+
+    /**
+     * Constructs a cache using LRU eviction.
+     *
+     * @param maxSize The maximum number of networks to cache.
+     */
+    public ResultCache(int maxSize) {
+        this(maxSize, Eviction.LRU);
+    }
+
+    /**
+     * @param maxSize  The maximum number of networks to cache.
+     * @param eviction The eviction policy to use once the cache is full.
+     * @throws IllegalArgumentException if {@code maxSize} is not positive.
+     */
+    public ResultCache(int maxSize, Eviction eviction) {
+        this(maxSize, eviction, null);
+    }
+
+    /**
+     * @param maxSize    The maximum number of networks to cache.
+     * @param eviction   The eviction policy to use once the cache is full.
+     * @param timeToLive How long an entry is returned after it was cached, or
+     *                   {@code null} if entries should not expire.
+     * @throws IllegalArgumentException if {@code maxSize} or
+     *     {@code timeToLive} is not positive.
+     */
+    public ResultCache(int maxSize, Eviction eviction, Duration timeToLive) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLive == null ? 0 : timeToLive.toNanos();
+        this.entries = new ConcurrentHashMap<>();
+        var slots = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 24)) * 4 - 1);
+        this.networkCounts = new AtomicIntegerArray(slots);
+        this.networkMask = slots - 1;
+        this.sketch = eviction == Eviction.TINY_LFU ? new FrequencySketch(maxSize) : null;
+    }
+
+    /**
+     * @return The number of lookups answered from the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that were not in the cache.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of entries discarded to make room for new ones.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of networks currently cached.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries from the cache. The counters are not reset.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            clock.clear();
+            clearCounts(ipv4PrefixCounts);
+            clearCounts(ipv6PrefixCounts);
+            clearCounts(networkCounts);
+            if (sketch != null) {
+                sketch.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void attach() {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalArgumentException(
+                "The ResultCache is already in use by another reader or client");
+        }
+    }
+
+    void detach() {
+        clear();
+        attached.set(false);
+    }
+
+    /**
+     * @param cls     The response class that was requested.
+     * @param address The address being looked up.
+     * @return The cached entry for the network containing the address, or
+     *     {@code null} if there is none.
+     */
+    Entry get(Class<?> cls, InetAddress address) {
+        var bytes = address.getAddress();
+        var counts = prefixCounts(bytes.length);
+        // One probe is allocated per lookup and retargeted at each prefix
+        // length, rather than masking a copy of the address for each.
+        var probe = new Key(cls, bytes);
+        for (var prefixLength = counts.length() - 1; prefixLength >= 0; prefixLength--) {
+            if (counts.get(prefixLength) == 0) {
+                continue;
+            }
+            probe.retarget(prefixLength);
+            if (networkCounts.get(slot(probe)) == 0) {
+                continue;
+            }
+            var node = entries.get(probe);
+            if (node == null) {
+                continue;
+            }
+            var entry = node.entry;
+            if (isExpired(entry)) {
+                // Left for put() to replace or for eviction to discard
+                continue;
+            }
+            node.referenced = true;
+            // Frequencies are sampled: a hit that finds the lock held is not
+            // counted, rather than waiting for it.
+            if (sketch != null && lock.tryLock()) {
+                try {
+                    sketch.increment(probe.hashCode());
+                } finally {
+                    lock.unlock();
+                }
+            }
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param cls     The response class that was requested.
+     * @param network The network that the lookup matched.
+     * @param model   The final response, or {@code null} if there is no data.
+     */
+    void put(Class<?> cls, Network network, Object model) {
+        var bytes = network.networkAddress().getAddress();
+        var prefixLength = network.prefixLength();
+        if (prefixLength < 0 || prefixLength > bytes.length * 8) {
+            return;
+        }
+        var key = Key.masked(cls, bytes, prefixLength);
+        var entry = new Entry(model, network, System.nanoTime() + timeToLiveNanos);
+        lock.lock();
+        try {
+            if (sketch != null) {
+                sketch.increment(key.hashCode());
+            }
+            var existing = entries.get(key);
+            if (existing != null) {
+                existing.entry = entry;
+                return;
+            }
+            if (entries.size() >= maxSize && !evictFor(key)) {
+                return;
+            }
+            var node = new Node(key, entry);
+            entries.put(key, node);
+            clock.add(node);
+            prefixCounts(bytes.length).incrementAndGet(prefixLength);
+            networkCounts.incrementAndGet(slot(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs the CLOCK hand until it finds an entry that has expired or has not
+    // been used since the hand last passed it, and discards that entry unless
+    // the sketch prefers it to the new one. Must hold the lock.
+    private boolean evictFor(Key key) {
+        var victim = clock.peek();
+        // Bounded, as lookups may keep marking entries as used
+        for (var i = clock.size(); i > 0; i--) {
+            victim = clock.peek();
+            if (!victim.referenced || isExpired(victim.entry)) {
+                break;
+            }
+            victim.referenced = false;
+            clock.add(clock.poll());
+        }
+        if (sketch != null
+            && !isExpired(victim.entry)
+            && sketch.frequency(key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+            return false;
+        }
+        clock.poll();
+        entries.remove(victim.key);
+        prefixCounts(victim.key.address.length).decrementAndGet(victim.key.prefixLength);
+        networkCounts.decrementAndGet(slot(victim.key));
+        evictions.increment();
+        return true;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return timeToLiveNanos != 0 && System.nanoTime() - entry.expiresAt() >= 0;
+    }
+
+    private AtomicIntegerArray prefixCounts(int addressLength) {
+        return addressLength == 4 ? ipv4PrefixCounts : ipv6PrefixCounts;
+    }
+
+    private int slot(Key key) {
+        var h = key.hashCode() * 0x9E3779B9;
+        return (h ^ h >>> 16) & networkMask;
+    }
+
+    private static void clearCounts(AtomicIntegerArray counts) {
+        for (var i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static final class Node {
+        private final Key key;
+        private volatile Entry entry;
+        // Set by lookups and cleared by the CLOCK hand
+        private volatile boolean referenced;
+
+        Node(Key key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * The network of a cached entry, or a probe for the network containing
+     * an address at a given prefix length. Only the bits within the prefix
+     * length are compared and hashed, so a probe may hold the whole address.
+     */
+    private static final class Key {
+        private final Class<?> cls;
+        private final byte[] address;
+        // Changed only on probes, which are never stored
+        private int prefixLength;
+        private int hash;
+
+        // A probe, which must be retargeted before use
+        Key(Class<?> cls, byte[] address) {
+            this.cls = cls;
+            this.address = address;
+        }
+
+        static Key masked(Class<?> cls, byte[] address, int prefixLength) {
+            var masked = new byte[address.length];
+            var wholeBytes = prefixLength / 8;
+            System.arraycopy(address, 0, masked, 0, wholeBytes);
+            var remainingBits = prefixLength % 8;
+            if (remainingBits != 0) {
+                masked[wholeBytes] = (byte) (address[wholeBytes] & lastByteMask(remainingBits));
+            }
+            var key = new Key(cls, masked);
+            key.retarget(prefixLength);
+            return key;
+        }
+
+        void retarget(int prefixLength) {
+            this.prefixLength = prefixLength;
+            var h = cls.hashCode();
+            var wholeBytes = prefixLength / 8;
+            for (var i = 0; i < wholeBytes; i++) {
+                h = 31 * h + address[i];
+            }
+            var remainingBits = prefixLength % 8;
+            if (remainingBits != 0) {
+                h = 31 * h + (address[wholeBytes] & lastByteMask(remainingBits));
+            }
+            this.hash = 31 * h + prefixLength;
+        }
+
+        private static int lastByteMask(int remainingBits) {
+            return (0xFF << (8 - remainingBits)) & 0xFF;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            if (prefixLength != other.prefixLength
+                || cls != other.cls
+                || address.length != other.address.length) {
+                return false;
+            }
+            var wholeBytes = prefixLength / 8;
+            if (!Arrays.equals(address, 0, wholeBytes, other.address, 0, wholeBytes)) {
+                return false;
+            }
+            var remainingBits = prefixLength % 8;
+            return remainingBits == 0
+                || ((address[wholeBytes] ^ other.address[wholeBytes])
+                & lastByteMask(remainingBits)) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters used to estimate how often each
+     * network has been requested. The counters are halved periodically so
+     * that the estimates favor recent requests.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {
+            0x97CB3127, 0xB71C71E5, 0xC2B2AE3D, 0x27D4EB2F,
+        };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            var size = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 24)) * 2 - 1);
+            this.table = new byte[size * 4];
+            this.mask = table.length - 1;
+            this.sampleSize = (int) Math.min(10L * maxSize, Integer.MAX_VALUE);
+        }
+
+        int frequency(int hash) {
+            var frequency = MAX_COUNT;
+            for (var seed : SEEDS) {
+                frequency = Math.min(frequency, table[index(hash, seed)]);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            for (var seed : SEEDS) {
+                var i = index(hash, seed);
+                if (table[i] < MAX_COUNT) {
+                    table[i]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (var i = 0; i < table.length; i++) {
+                    table[i] = (byte) (table[i] >>> 1);
+                }
+                additions /= 2;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(table, (byte) 0);
+            additions = 0;
+        }
+
+        private int index(int hash, int seed) {
+            var h = (hash ^ seed) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+    }
+}
@@ -5,9 +5,11 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.maxmind.db.Network;
 import com.maxmind.geoip2.exception.AddressNotFoundException;
 import com.maxmind.geoip2.exception.AuthenticationException;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
@@ -18,6 +20,7 @@ import com.maxmind.geoip2.exception.PermissionRequiredException;
 import com.maxmind.geoip2.model.CityResponse;
 import com.maxmind.geoip2.model.CountryResponse;
 import com.maxmind.geoip2.model.InsightsResponse;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -38,6 +41,14 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 
@@ -88,6 +99,23 @@ import javax.net.ssl.SSLPeerUnverifiedException;
  * are making multiple requests, the object should be reused so that new
  * connections are not created for each request.
  * </p>
+ * <p>
+ * If a {@link ResultCache} is set with
+ * {@link Builder#withResultCache(ResultCache)}, the responses are cached by
+ * the network in their {@code traits}, and lookups of any address in a cached
+ * network are answered without a request until the entry expires.
+ * </p>
+ * <p>
+ * Concurrent lookups of the same address in the same service may share a
+ * single request, with every caller receiving its response or exception.
+ * This is enabled with {@link Builder#coalesceRequests(boolean)}.
+ * </p>
+ * <p>
+ * The number of requests in flight may be limited with
+ * {@link Builder#concurrencyLimit(int)}. The limit adapts to the latency and
+ * the server errors of the responses, and the requests beyond it are queued
+ * or fail immediately.
+ * </p>
  * <h2>Exceptions</h2>
  * <p>
  * For details on the possible errors returned by the web service itself, see <a
@@ -124,8 +152,16 @@ public class WebServiceClient implements WebServiceProvider {
         + " (Java/" + System.getProperty("java.version") + ")";
 
     private final ObjectMapper mapper;
+    // Readers for the responses, with the locales injected, and for the error
+    // documents. ObjectReaders are immutable and safe to share.
+    private final Map<Class<?>, ObjectReader> responseReaders;
+    private final ObjectReader errorReader;
     private final HttpClient httpClient;
-
+    private final ResultCache resultCache;
+    private final LongAdder queriesSaved = new LongAdder();
+    // The requests in flight by URI, or null if requests are not coalesced.
+    private final ConcurrentHashMap<URI, CompletableFuture<Object>> inFlight;
+    private final ConcurrencyLimiter limiter;
 
     private WebServiceClient(Builder builder) {
         this.host = builder.host;
@@ -147,8 +183,28 @@ public class WebServiceClient implements WebServiceProvider {
             .addModule(new JavaTimeModule())
             .build();
 
+        var inject = new InjectableValues.Std()
+            .addValue("locales", locales);
+        responseReaders = Map.of(
+            CountryResponse.class, mapper.readerFor(CountryResponse.class).with(inject),
+            CityResponse.class, mapper.readerFor(CityResponse.class).with(inject),
+            InsightsResponse.class, mapper.readerFor(InsightsResponse.class).with(inject)
+        );
+        errorReader = mapper.readerFor(new TypeReference<HashMap<String, String>>() {
+        });
+
         requestTimeout = builder.requestTimeout;
 
+        resultCache = builder.resultCache;
+        if (resultCache != null) {
+            resultCache.attach();
+        }
+
+        inFlight = builder.coalesceRequests ? new ConcurrentHashMap<>() : null;
+        limiter = builder.concurrencyLimit > 0
+            ? new ConcurrencyLimiter(builder.concurrencyLimit, builder.maxQueuedRequests)
+            : null;
+
         if (builder.httpClient != null) {
             httpClient = builder.httpClient;
         } else {
@@ -191,6 +247,10 @@ public class WebServiceClient implements WebServiceProvider {
         private ProxySelector proxy = null;
         private HttpClient httpClient = null;
         private int maxRetries = 1;
+        private ResultCache resultCache = null;
+        private boolean coalesceRequests = false;
+        private int concurrencyLimit = 0;
+        private int maxQueuedRequests = 0;
 
         /**
          * @param accountId  Your MaxMind account ID.
@@ -314,6 +374,86 @@ public class WebServiceClient implements WebServiceProvider {
             return this;
         }
 
+        /**
+         * Enables caching of the responses by the network in their
+         * {@code traits}. Any later lookup of an address within a cached
+         * network, using the same service, is answered from the cache
+         * without a request to the web service. Use a {@code ResultCache}
+         * with a time to live, as the data of the web services changes
+         * continually. Lookups of the requesting IP address are not cached.
+         * By default, no responses are cached.
+         *
+         * @param val the result cache to use. It must not be in use by
+         *            another reader or client, and it remains bound to the
+         *            client once built.
+         * @return Builder object
+         * @apiNote The {@code maxmind().queriesRemaining()} of a cached
+         *     response is the value when the response was cached. Use
+         *     {@link WebServiceClient#queriesSaved()} for the number of
+         *     queries the cache has saved.
+         */
+        public Builder withResultCache(ResultCache val) {
+            this.resultCache = val;
+            return this;
+        }
+
+        /**
+         * @param val Whether concurrent lookups of the same address in the
+         *            same service share a single request. The callers that
+         *            join a request in flight receive the same response
+         *            object as the caller that sent it, or a copy of its
+         *            exception with that exception as the cause. If the
+         *            caller that sent the request is interrupted, the
+         *            callers that joined it send the request again.
+         *            Defaults to {@code false}.
+         * @return Builder object
+         */
+        public Builder coalesceRequests(boolean val) {
+            this.coalesceRequests = val;
+            return this;
+        }
+
+        /**
+         * Enables an adaptive limit on the number of requests in flight. The
+         * limit starts at {@code val}. It is lowered when a request fails
+         * with a server error or a timeout, or takes more than twice the
+         * average latency, and raised again gradually as requests succeed.
+         * Requests beyond the limit wait in the queue set by
+         * {@link #maxQueuedRequests(int)}. Lookups answered from the result
+         * cache or by a coalesced request do not count towards the limit. By
+         * default, there is no limit.
+         *
+         * @param val The initial and maximum number of requests in flight.
+         * @return Builder object
+         * @throws IllegalArgumentException if {@code val} is not positive.
+         */
+        public Builder concurrencyLimit(int val) {
+            if (val <= 0) {
+                throw new IllegalArgumentException("concurrencyLimit must be positive");
+            }
+            concurrencyLimit = val;
+            return this;
+        }
+
+        /**
+         * @param val The number of requests that may wait for a request in
+         *            flight to finish once the concurrency limit is reached.
+         *            Beyond it, requests fail with a
+         *            {@link GeoIp2Exception} without being sent. Defaults to
+         *            0, so that requests beyond the limit fail immediately.
+         *            This has no effect unless
+         *            {@link #concurrencyLimit(int)} is set.
+         * @return Builder object
+         * @throws IllegalArgumentException if {@code val} is negative.
+         */
+        public Builder maxQueuedRequests(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("maxQueuedRequests must not be negative");
+            }
+            maxQueuedRequests = val;
+            return this;
+        }
+
         /**
          * @return an instance of {@code WebServiceClient} created from the
          * fields set on this builder.
@@ -344,6 +484,25 @@ public class WebServiceClient implements WebServiceProvider {
         }
     }
 
+    /**
+     * @return The number of lookups answered from the result cache or by
+     *     joining an identical request in flight. Each of them would
+     *     otherwise have been deducted from the {@code queriesRemaining} of
+     *     the service.
+     */
+    public long queriesSaved() {
+        return queriesSaved.sum();
+    }
+
+    /**
+     * @return The current concurrency limit, requests in flight, and queue,
+     *     or an empty {@code Optional} if no limit was set with
+     *     {@link Builder#concurrencyLimit(int)}.
+     */
+    public Optional<ConcurrencyLimitStats> concurrencyLimitStats() {
+        return limiter == null ? Optional.empty() : Optional.of(limiter.stats());
+    }
+
     /**
      * @return A Country model for the requesting IP address
      * @throws GeoIp2Exception if there is an error from the web service
@@ -359,6 +518,21 @@ public class WebServiceClient implements WebServiceProvider {
         return this.responseFor("country", ipAddress, CountryResponse.class);
     }
 
+    /**
+     * Looks up an address in the Country web service without blocking the
+     * calling thread. Transport failures are retried as with
+     * {@link #country(InetAddress)}.
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup, or {@code null} for
+     *                  the requesting IP address.
+     * @return A future that completes with the Country model for the
+     *     address, or exceptionally with the {@link GeoIp2Exception} or
+     *     {@link IOException} that {@link #country(InetAddress)} would throw.
+     */
+    public CompletableFuture<CountryResponse> countryAsync(InetAddress ipAddress) {
+        return this.responseForAsync("country", ipAddress, CountryResponse.class);
+    }
+
     /**
      * @return A City Plus model for the requesting IP address
      * @throws GeoIp2Exception if there is an error from the web service
@@ -374,6 +548,21 @@ public class WebServiceClient implements WebServiceProvider {
         return this.responseFor("city", ipAddress, CityResponse.class);
     }
 
+    /**
+     * Looks up an address in the City Plus web service without blocking the
+     * calling thread. Transport failures are retried as with
+     * {@link #city(InetAddress)}.
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup, or {@code null} for
+     *                  the requesting IP address.
+     * @return A future that completes with the City Plus model for the
+     *     address, or exceptionally with the {@link GeoIp2Exception} or
+     *     {@link IOException} that {@link #city(InetAddress)} would throw.
+     */
+    public CompletableFuture<CityResponse> cityAsync(InetAddress ipAddress) {
+        return this.responseForAsync("city", ipAddress, CityResponse.class);
+    }
+
     /**
      * @return An Insights model for the requesting IP address
      * @throws GeoIp2Exception if there is an error from the web service
@@ -394,24 +583,97 @@ public class WebServiceClient implements WebServiceProvider {
         return this.responseFor("insights", ipAddress, InsightsResponse.class);
     }
 
+    /**
+     * Looks up an address in the Insights web service without blocking the
+     * calling thread. Transport failures are retried as with
+     * {@link #insights(InetAddress)}.
+     *
+     * @param ipAddress IPv4 or IPv6 address to lookup, or {@code null} for
+     *                  the requesting IP address.
+     * @return A future that completes with the Insights model for the
+     *     address, or exceptionally with the {@link GeoIp2Exception} or
+     *     {@link IOException} that {@link #insights(InetAddress)} would throw.
+     */
+    public CompletableFuture<InsightsResponse> insightsAsync(InetAddress ipAddress) {
+        return this.responseForAsync("insights", ipAddress, InsightsResponse.class);
+    }
+
     private <T> T responseFor(String path, InetAddress ipAddress, Class<T> cls)
         throws IOException, GeoIp2Exception {
+        var cached = cachedResponse(ipAddress, cls);
+        if (cached != null) {
+            return cached;
+        }
         var uri = createUri(path, ipAddress);
+        if (inFlight == null) {
+            return send(uri, ipAddress, cls);
+        }
+        while (true) {
+            var request = new CompletableFuture<>();
+            var existing = inFlight.putIfAbsent(uri, request);
+            if (existing == null) {
+                try {
+                    var model = send(uri, ipAddress, cls);
+                    inFlight.remove(uri, request);
+                    request.complete(model);
+                    return model;
+                } catch (Throwable t) {
+                    inFlight.remove(uri, request);
+                    if (Thread.currentThread().isInterrupted()) {
+                        // The interrupt only applies to this caller. The
+                        // callers that joined the request send it again.
+                        request.cancel(false);
+                    } else {
+                        request.completeExceptionally(t);
+                    }
+                    throw t;
+                }
+            }
+            try {
+                var model = cls.cast(await(existing));
+                queriesSaved.increment();
+                return model;
+            } catch (CancellationException e) {
+                // The caller that sent the request was interrupted
+            }
+        }
+    }
 
-        var request = HttpRequest.newBuilder()
-            .uri(uri)
-            .timeout(this.requestTimeout)
-            .header("Accept", "application/json")
-            .header("Authorization", authHeader)
-            .header("User-Agent", this.userAgent)
-            .GET()
-            .build();
+    private <T> T send(URI uri, InetAddress ipAddress, Class<T> cls)
+        throws IOException, GeoIp2Exception {
+        if (limiter == null) {
+            return execute(uri, ipAddress, cls);
+        }
+        var permit = limiter.acquire();
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            limiter.cancel(permit);
+            Thread.currentThread().interrupt();
+            throw new GeoIp2Exception("Interrupted waiting to send request", e);
+        } catch (ExecutionException e) {
+            throw (GeoIp2Exception) unwrap(e);
+        }
+        var start = System.nanoTime();
+        try {
+            var model = execute(uri, ipAddress, cls);
+            limiter.onSuccess(System.nanoTime() - start);
+            return model;
+        } catch (Throwable t) {
+            release(t, start);
+            throw t;
+        }
+    }
+
+    private <T> T execute(URI uri, InetAddress ipAddress, Class<T> cls)
+        throws IOException, GeoIp2Exception {
+        var request = createRequest(uri);
         try {
             var response = sendWithRetry(request);
-            try {
-                return handleResponse(response, cls);
-            } finally {
-                response.body().close();
+            try (var body = response.body()) {
+                var model = handleResponse(response.statusCode(), response.uri(), body, cls);
+                cacheResponse(ipAddress, cls, model);
+                return model;
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -419,6 +681,197 @@ public class WebServiceClient implements WebServiceProvider {
         }
     }
 
+    private <T> CompletableFuture<T> responseForAsync(String path, InetAddress ipAddress,
+                                                      Class<T> cls) {
+        var cached = cachedResponse(ipAddress, cls);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        URI uri;
+        try {
+            uri = createUri(path, ipAddress);
+        } catch (GeoIp2Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (inFlight == null) {
+            return sendAsync(uri, ipAddress, cls);
+        }
+        var request = new CompletableFuture<>();
+        var existing = inFlight.putIfAbsent(uri, request);
+        if (existing != null) {
+            return existing.handle((model, failure) -> {
+                if (failure == null) {
+                    queriesSaved.increment();
+                    return CompletableFuture.completedFuture(cls.cast(model));
+                }
+                var cause = unwrap(failure);
+                if (cause instanceof CancellationException) {
+                    // The caller that sent the request was interrupted
+                    return responseForAsync(path, ipAddress, cls);
+                }
+                return CompletableFuture.<T>failedFuture(copyFailure(cause));
+            }).thenCompose(Function.identity());
+        }
+        CompletableFuture<T> response;
+        try {
+            response = sendAsync(uri, ipAddress, cls);
+        } catch (Throwable t) {
+            response = CompletableFuture.failedFuture(t);
+        }
+        response.whenComplete((model, failure) -> {
+            inFlight.remove(uri, request);
+            if (failure != null) {
+                request.completeExceptionally(unwrap(failure));
+            } else {
+                request.complete(model);
+            }
+        });
+        // Callers may complete or cancel the returned future, so it must not
+        // be the one shared with the other callers.
+        return request.thenApply(cls::cast);
+    }
+
+    private <T> CompletableFuture<T> sendAsync(URI uri, InetAddress ipAddress, Class<T> cls) {
+        if (limiter == null) {
+            return executeAsync(uri, ipAddress, cls);
+        }
+        return limiter.acquire().thenCompose(v -> {
+            var start = System.nanoTime();
+            CompletableFuture<T> response;
+            try {
+                response = executeAsync(uri, ipAddress, cls);
+            } catch (Throwable t) {
+                // The permit is held, so it must be released however the
+                // request fails.
+                response = CompletableFuture.failedFuture(t);
+            }
+            return response.whenComplete((model, failure) -> {
+                if (failure == null) {
+                    limiter.onSuccess(System.nanoTime() - start);
+                } else {
+                    release(unwrap(failure), start);
+                }
+            });
+        });
+    }
+
+    // Releases the permit of a failed request. Server errors and timeouts
+    // lower the concurrency limit. Other error responses still provide a
+    // latency sample.
+    private void release(Throwable failure, long start) {
+        if (failure instanceof HttpException e && e.httpStatus() >= 500
+            || failure instanceof HttpTimeoutException
+            || failure instanceof ConnectException) {
+            limiter.onDropped();
+        } else if (failure instanceof GeoIp2Exception || failure instanceof HttpException) {
+            limiter.onSuccess(System.nanoTime() - start);
+        } else {
+            limiter.onIgnore();
+        }
+    }
+
+    private <T> CompletableFuture<T> executeAsync(URI uri, InetAddress ipAddress,
+                                                  Class<T> cls) {
+        return sendAsyncWithRetry(createRequest(uri), 0, null).thenApply(response -> {
+            try {
+                var model = handleResponse(response.statusCode(), response.uri(),
+                    response.body(), cls);
+                cacheResponse(ipAddress, cls, model);
+                return model;
+            } catch (IOException | GeoIp2Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    // Waits for a request sent by another caller and throws a copy of its
+    // exception. Throws CancellationException if the caller that sent it was
+    // interrupted.
+    private static Object await(CompletableFuture<Object> request)
+        throws IOException, GeoIp2Exception {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeoIp2Exception("Interrupted waiting for request", e);
+        } catch (ExecutionException e) {
+            var copy = copyFailure(unwrap(e));
+            if (copy instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw (GeoIp2Exception) copy;
+        }
+    }
+
+    // Copies the failure of a shared request for one of the callers that
+    // joined it, so that each caller gets an exception of its own. The copy
+    // has the same type and message, and the shared failure as its cause.
+    private static Exception copyFailure(Throwable failure) {
+        var message = failure.getMessage();
+        Exception copy;
+        if (failure instanceof AddressNotFoundException) {
+            copy = new AddressNotFoundException(message);
+        } else if (failure instanceof AuthenticationException) {
+            copy = new AuthenticationException(message);
+        } else if (failure instanceof OutOfQueriesException) {
+            copy = new OutOfQueriesException(message);
+        } else if (failure instanceof PermissionRequiredException) {
+            copy = new PermissionRequiredException(message);
+        } else if (failure instanceof InvalidRequestException e) {
+            copy = new InvalidRequestException(message, e.code(), e.uri());
+        } else if (failure instanceof HttpException e) {
+            copy = new HttpException(message, e.httpStatus(), e.uri());
+        } else if (failure instanceof GeoIp2Exception) {
+            copy = new GeoIp2Exception(message);
+        } else if (failure instanceof IOException) {
+            copy = new IOException(message);
+        } else {
+            return new GeoIp2Exception("Error sending request", failure);
+        }
+        copy.initCause(failure);
+        return copy;
+    }
+
+    private <T> T cachedResponse(InetAddress ipAddress, Class<T> cls) {
+        if (resultCache == null || ipAddress == null) {
+            return null;
+        }
+        var cached = resultCache.get(cls, ipAddress);
+        if (cached == null) {
+            return null;
+        }
+        queriesSaved.increment();
+        return Responses.withIpAddress(cls.cast(cached.model()), ipAddress);
+    }
+
+    private void cacheResponse(InetAddress ipAddress, Class<?> cls, Object model) {
+        if (resultCache == null || ipAddress == null) {
+            return;
+        }
+        Network network = null;
+        if (model instanceof CountryResponse r) {
+            network = r.traits().network();
+        } else if (model instanceof CityResponse r) {
+            network = r.traits().network();
+        } else if (model instanceof InsightsResponse r) {
+            network = r.traits().network();
+        }
+        if (network != null) {
+            resultCache.put(cls, network, model);
+        }
+    }
+
+    private HttpRequest createRequest(URI uri) {
+        return HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(this.requestTimeout)
+            .header("Accept", "application/json")
+            .header("Authorization", authHeader)
+            .header("User-Agent", this.userAgent)
+            .GET()
+            .build();
+    }
+
     private HttpResponse<InputStream> sendWithRetry(HttpRequest request)
         throws IOException, InterruptedException {
         int attempts = 0;
@@ -442,6 +895,38 @@ public class WebServiceClient implements WebServiceProvider {
         }
     }
 
+    // The asynchronous counterpart of sendWithRetry. The whole body is
+    // received before the future completes, so decoding it does not block.
+    private CompletableFuture<HttpResponse<byte[]>> sendAsyncWithRetry(
+        HttpRequest request, int attempts, IOException prior) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .handle((response, failure) -> {
+                if (failure == null) {
+                    return CompletableFuture.completedFuture(response);
+                }
+                var cause = unwrap(failure);
+                if (!(cause instanceof IOException e)) {
+                    return CompletableFuture.<HttpResponse<byte[]>>failedFuture(cause);
+                }
+                if (prior != null) {
+                    e.addSuppressed(prior);
+                }
+                if (!isRetriableTransportFailure(e) || attempts >= maxRetries) {
+                    return CompletableFuture.<HttpResponse<byte[]>>failedFuture(e);
+                }
+                return sendAsyncWithRetry(request, attempts + 1, e);
+            })
+            .thenCompose(future -> future);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+            && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
     private static boolean isRetriableTransportFailure(IOException e) {
         if (Thread.currentThread().isInterrupted()) {
             return false;
@@ -481,49 +966,56 @@ public class WebServiceClient implements WebServiceProvider {
         return true;
     }
 
-    private <T> T handleResponse(HttpResponse<InputStream> response, Class<T> cls)
+    private <T> T handleResponse(int status, URI uri, InputStream body, Class<T> cls)
+        throws GeoIp2Exception, IOException {
+        handleStatus(status, uri, body);
+        try {
+            return responseReaders.get(cls).readValue(body);
+        } catch (IOException e) {
+            throw new GeoIp2Exception(
+                "Received a 200 response but could not decode it as JSON", e);
+        }
+    }
+
+    // Decodes a body that has already been read in full, without copying it.
+    private <T> T handleResponse(int status, URI uri, byte[] body, Class<T> cls)
         throws GeoIp2Exception, IOException {
-        var status = response.statusCode();
-        var uri = response.uri();
+        if (status != 200) {
+            handleStatus(status, uri, new ByteArrayInputStream(body));
+        }
+        try {
+            return responseReaders.get(cls).readValue(body);
+        } catch (IOException e) {
+            throw new GeoIp2Exception(
+                "Received a 200 response but could not decode it as JSON", e);
+        }
+    }
 
+    private void handleStatus(int status, URI uri, InputStream body)
+        throws GeoIp2Exception, IOException {
         if (status >= 400 && status < 500) {
-            this.handle4xxStatus(response);
+            this.handle4xxStatus(status, uri, body);
         } else if (status >= 500 && status < 600) {
-            exhaustBody(response);
+            exhaustBody(status, uri, body);
             throw new HttpException("Received a server error (" + status
                 + ") for " + uri, status, uri);
         } else if (status != 200) {
-            exhaustBody(response);
+            exhaustBody(status, uri, body);
             throw new HttpException("Received an unexpected HTTP status ("
                 + status + ") for " + uri, status, uri);
         }
-
-        var inject = new InjectableValues.Std()
-            .addValue("locales", locales);
-
-        try {
-            return mapper.readerFor(cls).with(inject).readValue(response.body());
-        } catch (IOException e) {
-            throw new GeoIp2Exception(
-                "Received a 200 response but could not decode it as JSON", e);
-        }
     }
 
-    private void handle4xxStatus(HttpResponse<InputStream> response)
+    private void handle4xxStatus(int status, URI uri, InputStream bodyStream)
         throws GeoIp2Exception, IOException {
-        var status = response.statusCode();
-        var uri = response.uri();
-
-        final var body = readBody(response);
+        final var body = readBody(bodyStream);
         if (body.isEmpty()) {
             throw new HttpException("Received a " + status + " error for "
                 + uri + " with no body", status, uri);
         }
 
         try {
-            var content = mapper.readValue(body,
-                new TypeReference<HashMap<String, String>>() {
-                });
+            Map<String, String> content = errorReader.readValue(body);
             handleErrorWithJsonBody(content, body, status, uri);
         } catch (HttpException e) {
             throw e;
@@ -580,21 +1072,21 @@ public class WebServiceClient implements WebServiceProvider {
         }
     }
 
-    private void exhaustBody(HttpResponse<InputStream> response) throws HttpException {
-        try (var body = response.body()) {
+    private static void exhaustBody(int status, URI uri, InputStream body)
+        throws HttpException {
+        try (body) {
             // Make sure we read the stream until the end so that
             // the connection can be reused.
             while (body.read() != -1) {
             }
         } catch (IOException e) {
-            throw new HttpException("Error reading response body", response.statusCode(),
-                response.uri(), e);
+            throw new HttpException("Error reading response body", status, uri, e);
         }
     }
 
-    private static String readBody(HttpResponse<InputStream> response) throws IOException {
-        try (var bodyStream = response.body()) {
-            return new String(bodyStream.readAllBytes(), StandardCharsets.UTF_8);
+    private static String readBody(InputStream body) throws IOException {
+        try (body) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
         }
     }
 
@@ -1,17 +1,21 @@
 package com.maxmind.geoip2.exception;
 
+import java.net.InetAddress;
+
 /**
  * This exception is thrown when the IP address is not found in the database.
  * This generally means that the address was a private or reserved address.
  */
 public final class AddressNotFoundException extends GeoIp2Exception {
 
+    private final InetAddress ipAddress;
 
     /**
      * @param message A message explaining the cause of the error.
      */
     public AddressNotFoundException(String message) {
         super(message);
+        this.ipAddress = null;
     }
 
     /**
@@ -20,5 +24,37 @@ public final class AddressNotFoundException extends GeoIp2Exception {
      */
     public AddressNotFoundException(String message, Throwable e) {
         super(message, e);
+        this.ipAddress = null;
+    }
+
+    /**
+     * Constructs an exception for an address that is not in the database.
+     * The message is only formatted when it is requested.
+     *
+     * @param ipAddress          The address that was not found.
+     * @param writableStackTrace Whether the stack trace should be captured.
+     *                           Omitting it makes the exception much cheaper
+     *                           to create.
+     */
+    public AddressNotFoundException(InetAddress ipAddress, boolean writableStackTrace) {
+        super(null, null, writableStackTrace);
+        this.ipAddress = ipAddress;
+    }
+
+    /**
+     * @return The address that was not found, or {@code null} if the
+     *     exception was not created with one.
+     */
+    public InetAddress ipAddress() {
+        return ipAddress;
+    }
+
+    @Override
+    public String getMessage() {
+        var message = super.getMessage();
+        if (message == null && ipAddress != null) {
+            return "The address " + ipAddress.getHostAddress() + " is not in the database.";
+        }
+        return message;
     }
 }
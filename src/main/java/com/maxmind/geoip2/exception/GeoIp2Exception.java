@@ -26,4 +26,14 @@ public sealed class GeoIp2Exception extends Exception
     public GeoIp2Exception(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * @param message            A message describing the reason why the exception was
+     *                           thrown.
+     * @param cause              The cause of the exception.
+     * @param writableStackTrace Whether the stack trace should be captured.
+     */
+    protected GeoIp2Exception(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
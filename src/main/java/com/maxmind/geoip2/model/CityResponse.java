@@ -126,15 +126,16 @@ public record CityResponse(
         );
     }
 
-    private static ArrayList<Subdivision> mapSubdivisions(
+    private static List<Subdivision> mapSubdivisions(
         List<Subdivision> subdivisions,
         List<String> locales
     ) {
-        var subdivisions2 = new ArrayList<Subdivision>(subdivisions.size());
-        for (var subdivision : subdivisions) {
-            subdivisions2.add(new Subdivision(subdivision, locales));
+        var localized = new Subdivision[subdivisions.size()];
+        for (var i = 0; i < localized.length; i++) {
+            localized[i] = new Subdivision(subdivisions.get(i), locales);
         }
-        return subdivisions2;
+        // An immutable list is not copied again by the canonical constructor.
+        return List.of(localized);
     }
 
     /**
@@ -0,0 +1,115 @@
+package com.maxmind.geoip2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.maxmind.geoip2.model.ConnectionTypeResponse.ConnectionType;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CompositeDatabaseReaderTest {
+    private DatabaseReader city;
+    private DatabaseReader asn;
+    private DatabaseReader connectionType;
+    private DatabaseReader anonymousIp;
+
+    @BeforeEach
+    public void setup() throws IOException, URISyntaxException {
+        city = open("GeoIP2-City-Test.mmdb");
+        asn = open("GeoLite2-ASN-Test.mmdb");
+        connectionType = open("GeoIP2-Connection-Type-Test.mmdb");
+        anonymousIp = open("GeoIP2-Anonymous-IP-Test.mmdb");
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        city.close();
+        asn.close();
+        connectionType.close();
+        anonymousIp.close();
+    }
+
+    private CompositeDatabaseReader.Builder builder() {
+        return new CompositeDatabaseReader.Builder()
+            .city(city)
+            .asn(asn)
+            .connectionType(connectionType)
+            .anonymousIp(anonymousIp);
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        var reader = builder().build();
+
+        var result = reader.lookup(InetAddress.getByName("81.2.69.160"));
+        assertEquals("London", result.city().city().name());
+
+        result = reader.lookup(InetAddress.getByName("1.128.0.0"));
+        assertEquals(1221, result.asn().autonomousSystemNumber().intValue());
+        assertNull(result.city());
+
+        result = reader.lookup(InetAddress.getByName("1.0.1.0"));
+        assertEquals(ConnectionType.CELLULAR, result.connectionType().connectionType());
+
+        result = reader.lookup(InetAddress.getByName("1.2.0.1"));
+        assertTrue(result.anonymousIp().isAnonymousVpn());
+    }
+
+    @Test
+    public void testParallelLookup() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            var sequential = builder().build();
+            var parallel = builder().executor(executor).build();
+            for (var address : new String[] {"81.2.69.160", "1.128.0.0", "1.0.1.0", "1.2.0.1"}) {
+                var ipAddress = InetAddress.getByName(address);
+                assertEquals(toJson(sequential.lookup(ipAddress)),
+                    toJson(parallel.lookup(ipAddress)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReservedAddresses() throws Exception {
+        var reader = builder().build();
+        for (var address : new String[] {"10.0.0.1", "127.0.0.1", "192.168.1.1", "fd00::1"}) {
+            assertEquals(new CompositeDatabaseReader.Result(null, null, null, null),
+                reader.lookup(InetAddress.getByName(address)));
+        }
+    }
+
+    @Test
+    public void testMismatchedDatabase() throws Exception {
+        var reader = new CompositeDatabaseReader.Builder()
+            .asn(city)
+            .build();
+        assertThrows(UnsupportedOperationException.class,
+            () -> reader.lookup(InetAddress.getByName("1.128.0.0")));
+    }
+
+    private static String toJson(CompositeDatabaseReader.Result result) throws IOException {
+        var json = new StringBuilder();
+        for (var response : new JsonSerializable[] {
+            result.city(), result.asn(), result.connectionType(), result.anonymousIp()}) {
+            json.append(response == null ? "null" : response.toJson()).append('\n');
+        }
+        return json.toString();
+    }
+
+    private DatabaseReader open(String filename) throws IOException, URISyntaxException {
+        var resource = CompositeDatabaseReaderTest.class
+            .getResource("/maxmind-db/test-data/" + filename);
+        return new DatabaseReader.Builder(new File(resource.toURI())).build();
+    }
+}
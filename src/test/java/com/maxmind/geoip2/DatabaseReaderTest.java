@@ -4,9 +4,14 @@ import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.maxmind.db.MaxMindDbNetwork;
+import com.maxmind.db.MaxMindDbParameter;
+import com.maxmind.db.Network;
 import com.maxmind.db.Networks;
 import com.maxmind.db.Reader;
 import com.maxmind.geoip2.exception.AddressNotFoundException;
@@ -31,6 +36,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -182,6 +191,21 @@ public class DatabaseReaderTest {
         }
     }
 
+    @Test
+    public void unknownAddressStackless() throws Exception {
+        try (DatabaseReader reader = new DatabaseReader.Builder(this.geoipFile)
+            .stacklessAddressNotFound(true)
+            .build()
+        ) {
+            this.unknownAddress(reader);
+
+            var ex = assertThrows(AddressNotFoundException.class,
+                () -> reader.country(InetAddress.getByName("10.10.10.10")));
+            assertEquals(0, ex.getStackTrace().length);
+            assertEquals("10.10.10.10", ex.ipAddress().getHostAddress());
+        }
+    }
+
     private void unknownAddress(DatabaseReader reader) throws IOException,
         GeoIp2Exception {
         assertFalse(reader.tryCity(InetAddress.getByName("10.10.10.10")).isPresent());
@@ -192,6 +216,395 @@ public class DatabaseReaderTest {
             containsString("The address 10.10.10.10 is not in the database."));
     }
 
+    @Test
+    public void testTryCityAll() throws Exception {
+        try (DatabaseReader reader = new DatabaseReader.Builder(this.geoipFile)
+            .build()
+        ) {
+            var ipAddresses = List.of(
+                InetAddress.getByName("81.2.69.160"),
+                // Same network as the previous address
+                InetAddress.getByName("81.2.69.161"),
+                InetAddress.getByName("10.10.10.10"),
+                InetAddress.getByName("81.2.69.192")
+            );
+
+            var responses = reader.tryCityAll(ipAddresses);
+            assertEquals(ipAddresses.size(), responses.size());
+            for (var i = 0; i < ipAddresses.size(); i++) {
+                var expected = reader.tryCity(ipAddresses.get(i));
+                assertEquals(expected.isPresent(), responses.get(i).isPresent());
+                if (expected.isPresent()) {
+                    assertEquals(expected.get().toJson(), responses.get(i).get().toJson());
+                }
+            }
+            assertEquals("81.2.69.161",
+                responses.get(1).get().traits().ipAddress().getHostAddress());
+            assertEquals("London", responses.get(1).get().city().name());
+        }
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        var cache = new ResultCache(10);
+        try (var uncached = new DatabaseReader.Builder(this.geoipFile).build();
+             var reader = new DatabaseReader.Builder(this.geoipFile)
+                 .withResultCache(cache)
+                 .build()
+        ) {
+            var first = InetAddress.getByName("81.2.69.160");
+            // Same network as the previous address
+            var second = InetAddress.getByName("81.2.69.161");
+            var notFound = InetAddress.getByName("10.10.10.10");
+
+            assertEquals(uncached.city(first).toJson(), reader.city(first).toJson());
+            assertEquals(0, cache.hits());
+            assertEquals(1, cache.misses());
+
+            var response = reader.city(second);
+            assertEquals(1, cache.hits());
+            assertEquals("81.2.69.161", response.traits().ipAddress().getHostAddress());
+            assertEquals(uncached.city(second).toJson(), response.toJson());
+
+            assertFalse(reader.tryCity(notFound).isPresent());
+            assertFalse(reader.tryCity(notFound).isPresent());
+            assertEquals(2, cache.hits());
+            assertEquals(2, cache.misses());
+            assertEquals(2, cache.size());
+
+            // The cache is keyed by response class as well as network
+            reader.tryCountry(first);
+            assertEquals(3, cache.misses());
+
+            var other = new DatabaseReader.Builder(this.geoipFile);
+            assertThrows(IllegalArgumentException.class,
+                () -> other.withResultCache(cache).build());
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDatabaseTypeOverride() throws Exception {
+        var custom = this.getFile("MaxMind-DB-test-ipv4-24.mmdb");
+        var ex = assertThrows(IllegalArgumentException.class,
+            () -> new DatabaseReader.Builder(custom).build());
+        assertThat(ex.getMessage(), containsString("Unsupported database type: Test"));
+
+        try (var reader = new DatabaseReader.Builder(custom)
+            .databaseType(DatabaseReader.DatabaseType.CITY)
+            .build()
+        ) {
+            var ipAddress = InetAddress.getByName("1.1.1.1");
+            assertTrue(reader.tryCity(ipAddress).isPresent());
+            assertTrue(reader.tryCountry(ipAddress).isPresent());
+            assertThrows(UnsupportedOperationException.class, () -> reader.asn(ipAddress));
+
+            // Readers sharing the database inherit the declared lookups
+            try (var view = new DatabaseReader.Builder(reader).build()) {
+                assertTrue(view.tryCity(ipAddress).isPresent());
+            }
+        }
+
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .databaseType(DatabaseReader.DatabaseType.COUNTRY)
+            .build()
+        ) {
+            var ipAddress = InetAddress.getByName("81.2.69.160");
+            assertEquals("GB", reader.country(ipAddress).country().isoCode());
+            assertThrows(UnsupportedOperationException.class, () -> reader.city(ipAddress));
+        }
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new DatabaseReader.Builder(this.geoipFile).databaseType());
+    }
+
+    @Test
+    public void testNetworkSpliteratorEstimateShrinks() throws Exception {
+        try (var reader = new Reader(this.geoipFile)) {
+            var upper = new NetworkSpliterator<>(reader, CountryIsoCodes.Data.class, false);
+            var initial = upper.estimateSize();
+            var lower = upper.trySplit();
+            assertEquals(initial / 2, upper.estimateSize());
+            assertEquals(initial / 2, lower.estimateSize());
+            assertTrue(lower.trySplit().estimateSize() < upper.estimateSize());
+        }
+    }
+
+    @Test
+    public void testNetworks() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile).build()) {
+            var sequential = reader.cityNetworks(false)
+                .map(response -> response.traits().network().toString())
+                .collect(Collectors.toList());
+            var parallel = reader.cityNetworks(false)
+                .parallel()
+                .map(response -> response.traits().network().toString())
+                .collect(Collectors.toList());
+            assertFalse(sequential.isEmpty());
+            assertEquals(sequential, parallel);
+            // No network is returned twice by the split ranges
+            assertEquals(sequential.size(), Set.copyOf(sequential).size());
+
+            var aliased = reader.cityNetworks(true)
+                .map(response -> response.traits().network().toString())
+                .collect(Collectors.toList());
+            assertEquals(aliased, reader.cityNetworks(true)
+                .parallel()
+                .map(response -> response.traits().network().toString())
+                .collect(Collectors.toList()));
+
+            var london = reader.cityNetworks(false)
+                .filter(response -> "London".equals(response.city().name()))
+                .count();
+            assertTrue(london > 0);
+
+            var isoCodes = reader.networks(CountryIsoCodes.Data.class, false)
+                .filter(record -> "GB".equals(CountryIsoCodes.isoCode(record.data())))
+                .count();
+            assertTrue(isoCodes >= london);
+        }
+
+        try (var reader = new DatabaseReader.Builder(
+            this.getFile("GeoLite2-ASN-Test.mmdb")).build()
+        ) {
+            assertThrows(UnsupportedOperationException.class, () -> reader.cityNetworks(false));
+        }
+    }
+
+    @Test
+    public void testInternNames() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .locales(List.of("de", "en"))
+            .internNames(true)
+            .build()
+        ) {
+            var first = reader.city(InetAddress.getByName("81.2.69.160"));
+            // A different network in the same country
+            var second = reader.city(InetAddress.getByName("81.2.69.192"));
+
+            assertEquals(first.country().geonameId(), second.country().geonameId());
+            assertSame(first.country().names(), second.country().names());
+            assertSame(first.country().names(), second.registeredCountry().names());
+            assertEquals(first.country().name(), second.country().name());
+            assertEquals(List.of("de", "en"), second.country().locales());
+        }
+    }
+
+    public record IsoCode(
+        @MaxMindDbParameter(name = "iso_code")
+        String isoCode
+    ) {
+    }
+
+    public record GeoPoint(
+        @MaxMindDbParameter(name = "latitude")
+        Double latitude,
+
+        @MaxMindDbParameter(name = "longitude")
+        Double longitude
+    ) {
+    }
+
+    public record Projection(
+        @MaxMindDbParameter(name = "country")
+        IsoCode country,
+
+        @MaxMindDbParameter(name = "location")
+        GeoPoint location,
+
+        @MaxMindDbNetwork
+        Network network
+    ) {
+    }
+
+    @Test
+    public void testLookupProjection() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile).build()) {
+            var ipAddress = InetAddress.getByName("81.2.69.160");
+            var expected = reader.city(ipAddress);
+
+            var projection = reader.lookup(ipAddress, Projection.class).get();
+            assertEquals(expected.country().isoCode(), projection.country().isoCode());
+            assertEquals(expected.location().latitude(), projection.location().latitude());
+            assertEquals(expected.location().longitude(), projection.location().longitude());
+            assertEquals(expected.traits().network().toString(),
+                projection.network().toString());
+
+            assertFalse(reader.lookup(InetAddress.getByName("10.10.10.10"), Projection.class)
+                .isPresent());
+        }
+    }
+
+    @Test
+    public void testCountryIsoCode() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile).build()) {
+            var first = reader.countryIsoCode(InetAddress.getByName("81.2.69.160"));
+            assertEquals("GB", first);
+            // Codes are canonical instances rather than newly decoded strings
+            assertSame(first, reader.countryIsoCode(InetAddress.getByName("81.2.69.192")));
+            assertNull(reader.countryIsoCode(InetAddress.getByName("10.10.10.10")));
+        }
+
+        try (var reader = new DatabaseReader.Builder(
+            this.getFile("GeoIP2-Domain-Test.mmdb")).build()
+        ) {
+            var ex = assertThrows(UnsupportedOperationException.class,
+                () -> reader.countryIsoCode(InetAddress.getByName("1.2.0.0")));
+            assertThat(ex.getMessage(),
+                containsString("GeoIP2-Domain database using the countryIsoCode method"));
+        }
+    }
+
+    @Test
+    public void testIpv4CountryTable() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile).build();
+             var tableReader = new DatabaseReader.Builder(this.geoipFile)
+                 .ipv4CountryTable(true)
+                 .build()
+        ) {
+            for (var address : new String[] {"81.2.69.160", "81.2.69.192", "2.125.160.216"}) {
+                var ipAddress = InetAddress.getByName(address);
+                assertEquals(reader.country(ipAddress).toJson(),
+                    tableReader.country(ipAddress).toJson());
+                assertEquals(reader.countryIsoCode(ipAddress),
+                    tableReader.countryIsoCode(ipAddress));
+            }
+
+            var unknown = InetAddress.getByName("10.10.10.10");
+            assertFalse(tableReader.tryCountry(unknown).isPresent());
+            assertNull(tableReader.countryIsoCode(unknown));
+            assertThrows(AddressNotFoundException.class, () -> tableReader.country(unknown));
+
+            // IPv6 addresses are looked up in the database
+            var ipv6Address = InetAddress.getByName("::81.2.69.160");
+            assertEquals(reader.country(ipv6Address).toJson(),
+                tableReader.country(ipv6Address).toJson());
+        }
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new DatabaseReader.Builder(this.getFile("GeoIP2-Domain-Test.mmdb"))
+                .ipv4CountryTable(true)
+                .build());
+    }
+
+    @Test
+    public void testRangeIndex() throws Exception {
+        var file = this.getFile("GeoLite2-ASN-Test.mmdb");
+        try (var reader = new DatabaseReader.Builder(file).build();
+             var indexed = new DatabaseReader.Builder(file)
+                 .rangeIndex(DatabaseReader.RangeIndexType.ASN)
+                 .build()
+        ) {
+            assertFalse(reader.rangeIndexStats().isPresent());
+
+            var stats = indexed.rangeIndexStats().get();
+            assertTrue(stats.ipv4Networks() > 0);
+            assertTrue(stats.ipv6Networks() > 0);
+            assertTrue(stats.distinctValues() > 0);
+            assertEquals(8L * stats.ipv4Networks() + 20L * stats.ipv6Networks(),
+                stats.offHeapBytes());
+            assertFalse(stats.buildDuration().isNegative());
+
+            for (var address : new String[] {
+                "1.128.0.0", "1.128.1.1", "10.10.10.10", "2600:6000::1", "::ffff:1.128.0.0"}) {
+                var ipAddress = InetAddress.getByName(address);
+                var expected = reader.tryAsn(ipAddress);
+                var actual = indexed.tryAsn(ipAddress);
+                assertEquals(expected.isPresent(), actual.isPresent());
+                if (expected.isPresent()) {
+                    assertEquals(expected.get().toJson(), actual.get().toJson());
+                }
+            }
+            assertEquals(1221, indexed.asn(InetAddress.getByName("1.128.0.0"))
+                .autonomousSystemNumber().intValue());
+        }
+
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .ipv4CountryTable(true)
+            .build()
+        ) {
+            assertEquals(0, reader.rangeIndexStats().get().ipv6Networks());
+        }
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new DatabaseReader.Builder(this.geoipFile)
+                .rangeIndex(DatabaseReader.RangeIndexType.DOMAIN)
+                .build());
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .preload(DatabaseReader.Preload.SEARCH_TREE)
+            .build()
+        ) {
+            var result = reader.preloadResult().getNow(null);
+            assertEquals(reader.metadata().searchTreeSize(), result.bytesLoaded());
+            assertFalse(result.duration().isNegative());
+        }
+
+        var executor = Executors.newSingleThreadExecutor();
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .preload(DatabaseReader.Preload.DATABASE, executor)
+            .build()
+        ) {
+            assertEquals("London",
+                reader.city(InetAddress.getByName("81.2.69.160")).city().name());
+            var result = reader.preloadResult().get();
+            assertEquals(this.geoipFile.length(), result.bytesLoaded());
+        } finally {
+            executor.shutdown();
+        }
+
+        try (var reader = new DatabaseReader.Builder(this.geoipFile)
+            .fileMode(Reader.FileMode.MEMORY)
+            .preload(DatabaseReader.Preload.DATABASE)
+            .build()
+        ) {
+            assertEquals(0, reader.preloadResult().getNow(null).bytesLoaded());
+        }
+    }
+
+    @Test
+    public void testSharedDatabase() throws Exception {
+        var ipAddress = InetAddress.getByName("81.2.69.160");
+        var reader = new DatabaseReader.Builder(this.geoipFile).build();
+        var view = new DatabaseReader.Builder(reader)
+            .locales(List.of("zh-CN", "en"))
+            .withResultCache(new ResultCache(10))
+            .build();
+
+        var response = reader.city(ipAddress);
+        var viewResponse = view.city(ipAddress);
+        assertEquals(response.city().geonameId(), viewResponse.city().geonameId());
+        assertEquals(List.of("en"), response.city().locales());
+        assertEquals(List.of("zh-CN", "en"), viewResponse.city().locales());
+
+        // The database stays open until the last reader sharing it is closed
+        reader.close();
+        assertEquals(viewResponse.toJson(), view.city(ipAddress).toJson());
+        view.close();
+        assertThrows(IOException.class, () -> new DatabaseReader.Builder(view).build());
+
+        var builder = new DatabaseReader.Builder(reader);
+        assertThrows(IllegalArgumentException.class,
+            () -> builder.fileMode(Reader.FileMode.MEMORY));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder.preload(DatabaseReader.Preload.SEARCH_TREE));
+    }
+
+    @Test
+    public void testTryCountryAllOnIncorrectDatabase() throws Exception {
+        try (DatabaseReader reader = new DatabaseReader.Builder(
+            this.getFile("GeoIP2-Domain-Test.mmdb")).build()
+        ) {
+            Exception ex = assertThrows(UnsupportedOperationException.class,
+                () -> reader.tryCountryAll(List.of(InetAddress.getByName("1.2.0.0"))));
+            assertThat(ex.getMessage(),
+                containsString("GeoIP2-Domain database using the tryCountryAll method"));
+        }
+    }
+
     @Test
     public void testUnsupportedFileMode() throws IOException {
         Exception ex = assertThrows(IllegalArgumentException.class,
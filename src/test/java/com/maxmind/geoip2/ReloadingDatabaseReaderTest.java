@@ -0,0 +1,180 @@
+package com.maxmind.geoip2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReloadingDatabaseReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReload() throws Exception {
+        var database = copy("GeoIP2-City-Test.mmdb");
+        try (var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(database.toFile()))
+        ) {
+            var ipAddress = InetAddress.getByName("81.2.69.160");
+            assertEquals("London", reader.city(ipAddress).city().name());
+            assertEquals(0, reader.swapCount());
+            assertEquals(Duration.ZERO, reader.lastSwapDuration());
+
+            replace("GeoIP2-Country-Test.mmdb", database);
+            reader.reload();
+
+            assertEquals(1, reader.swapCount());
+            assertFalse(reader.lastSwapDuration().isNegative());
+            assertEquals("GeoIP2-Country", reader.metadata().databaseType());
+            assertEquals("GB", reader.country(ipAddress).country().isoCode());
+            assertThrows(UnsupportedOperationException.class, () -> reader.city(ipAddress));
+        }
+    }
+
+    @Test
+    public void testFailedReloadKeepsCurrentReader() throws Exception {
+        var database = copy("GeoIP2-City-Test.mmdb");
+        try (var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(database.toFile()))
+        ) {
+            Files.delete(database);
+            assertThrows(IOException.class, reader::reload);
+
+            assertEquals(0, reader.swapCount());
+            assertTrue(reader.tryCity(InetAddress.getByName("81.2.69.160")).isPresent());
+        }
+    }
+
+    @Test
+    public void testReloadWhenClosingOldReaderFails() throws Exception {
+        var database = copy("GeoIP2-City-Test.mmdb");
+        try (var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(database.toFile()))
+        ) {
+            reader.closer = r -> {
+                r.close();
+                throw new IOException("close failed");
+            };
+            replace("GeoIP2-Country-Test.mmdb", database);
+            reader.reload();
+
+            // The swap stands and the new reader is not closed
+            assertEquals(1, reader.swapCount());
+            var ipAddress = InetAddress.getByName("81.2.69.160");
+            assertEquals("GB", reader.country(ipAddress).country().isoCode());
+
+            // The file is recorded as loaded
+            assertFalse(reader.reloadIfChanged());
+            assertEquals(0, reader.failedReloadCount());
+
+            reader.closer = DatabaseReader::close;
+        }
+    }
+
+    @Test
+    public void testReloadIfChanged() throws Exception {
+        var database = copy("GeoIP2-City-Test.mmdb");
+        try (var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(database.toFile()))
+        ) {
+            assertFalse(reader.reloadIfChanged());
+
+            // The same database with a new modification time is not swapped in
+            replace("GeoIP2-City-Test.mmdb", database);
+            Files.setLastModifiedTime(database, FileTime.from(Instant.now().plusSeconds(60)));
+            assertFalse(reader.reloadIfChanged());
+            assertEquals(0, reader.swapCount());
+            assertEquals(0, reader.failedReloadCount());
+            assertNull(reader.lastReloadFailure());
+
+            // A database of a different type is rejected
+            replace("GeoLite2-City-Test.mmdb", database);
+            assertFalse(reader.reloadIfChanged());
+            assertEquals(0, reader.swapCount());
+            assertEquals(1, reader.failedReloadCount());
+            assertEquals("The new database is a GeoLite2-City database, but the current "
+                + "database is a GeoIP2-City database", reader.lastReloadFailure().getMessage());
+            assertEquals("GeoIP2-City", reader.metadata().databaseType());
+
+            // The rejected file is not tried again until it changes
+            assertFalse(reader.reloadIfChanged());
+            assertEquals(1, reader.failedReloadCount());
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        var database = copy("GeoIP2-City-Test.mmdb");
+        try (var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(database.toFile()))
+        ) {
+            reader.watch(Duration.ofMillis(50));
+            assertThrows(IllegalStateException.class, () -> reader.watch(Duration.ofMillis(50)));
+
+            replace("GeoLite2-City-Test.mmdb", database);
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (reader.failedReloadCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, reader.failedReloadCount());
+            assertTrue(reader.tryCity(InetAddress.getByName("81.2.69.160")).isPresent());
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        var reader = new ReloadingDatabaseReader(
+            new DatabaseReader.Builder(copy("GeoIP2-City-Test.mmdb").toFile()));
+        reader.close();
+
+        var ex = assertThrows(IOException.class,
+            () -> reader.tryCity(InetAddress.getByName("81.2.69.160")));
+        assertEquals("The ReloadingDatabaseReader has been closed", ex.getMessage());
+        assertThrows(IOException.class, reader::reload);
+    }
+
+    @Test
+    public void testInvalidBuilders() throws Exception {
+        var file = getFile("GeoIP2-City-Test.mmdb");
+        try (var stream = Files.newInputStream(file.toPath())) {
+            assertThrows(IllegalArgumentException.class,
+                () -> new ReloadingDatabaseReader(new DatabaseReader.Builder(stream)));
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> new ReloadingDatabaseReader(new DatabaseReader.Builder(file)
+                .withResultCache(new ResultCache(10))));
+    }
+
+    private Path copy(String filename) throws IOException, URISyntaxException {
+        var target = tempDir.resolve("database.mmdb");
+        Files.copy(getFile(filename).toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    private void replace(String filename, Path database) throws IOException, URISyntaxException {
+        var temp = tempDir.resolve("database.mmdb.tmp");
+        Files.copy(getFile(filename).toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, database, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File getFile(String filename) throws URISyntaxException {
+        var resource = ReloadingDatabaseReaderTest.class
+            .getResource("/maxmind-db/test-data/" + filename);
+        return new File(resource.toURI());
+    }
+}
@@ -12,7 +12,9 @@ import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -48,6 +50,7 @@ import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import org.hamcrest.CoreMatchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
@@ -207,6 +210,252 @@ public class WebServiceClientTest {
             client.country().traits().ipAddress().getHostAddress());
     }
 
+    @Test
+    public void test200Async() throws Exception {
+        var ipAddress = InetAddress.getByName("1.2.3.4");
+        for (var service : new String[] {"country", "city", "insights"}) {
+            createSuccessClient(service, "1.2.3.4",
+                "{\"traits\":{\"ip_address\":\"1.2.3.4\"}}");
+        }
+        WebServiceClient client = createSuccessClient("country", "me",
+            "{\"traits\":{\"ip_address\":\"24.24.24.24\"}}");
+
+        assertEquals("1.2.3.4",
+            client.countryAsync(ipAddress).get().traits().ipAddress().getHostAddress());
+        assertEquals("1.2.3.4",
+            client.cityAsync(ipAddress).get().traits().ipAddress().getHostAddress());
+        assertEquals("1.2.3.4",
+            client.insightsAsync(ipAddress).get().traits().ipAddress().getHostAddress());
+        assertEquals("24.24.24.24",
+            client.countryAsync(null).get().traits().ipAddress().getHostAddress());
+    }
+
+    @Test
+    public void testAsyncErrors() throws Exception {
+        WebServiceClient client = createClient(
+            "insights",
+            "1.2.3.16",
+            404,
+            "application/json",
+            "{\"code\":\"IP_ADDRESS_NOT_FOUND\",\"error\":\"not found\"}"
+        );
+        var ex = assertThrows(ExecutionException.class,
+            () -> client.insightsAsync(InetAddress.getByName("1.2.3.16")).get());
+        assertTrue(ex.getCause() instanceof AddressNotFoundException);
+        assertEquals("not found", ex.getCause().getMessage());
+
+        createClient("insights", "me", 500, "application/json", "");
+        ex = assertThrows(ExecutionException.class, () -> client.insightsAsync(null).get());
+        assertTrue(ex.getCause() instanceof HttpException);
+        assertThat(ex.getCause().getMessage(), startsWith("Received a server error (500)"));
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        createSuccessClient("city", "1.2.3.4",
+            "{\"maxmind\":{\"queries_remaining\":11},"
+                + "\"traits\":{\"ip_address\":\"1.2.3.4\",\"network\":\"1.2.3.0/24\"}}");
+        var client = localClientBuilder()
+            .withResultCache(
+                new ResultCache(100, ResultCache.Eviction.LRU, Duration.ofMinutes(5)))
+            .build();
+
+        var first = client.city(InetAddress.getByName("1.2.3.4"));
+        assertEquals(0, client.queriesSaved());
+
+        var second = client.city(InetAddress.getByName("1.2.3.200"));
+        assertEquals("1.2.3.200", second.traits().ipAddress().getHostAddress());
+        assertEquals(first.city(), second.city());
+        assertEquals(first.traits().network(), second.traits().network());
+        assertEquals(11, second.maxmind().queriesRemaining().intValue());
+
+        var third = client.cityAsync(InetAddress.getByName("1.2.3.5")).get();
+        assertEquals("1.2.3.5", third.traits().ipAddress().getHostAddress());
+        assertEquals(2, client.queriesSaved());
+        wireMock.verify(1, getRequestedFor(urlEqualTo("/geoip/v2.1/city/1.2.3.4")));
+
+        // Responses are cached per service
+        createSuccessClient("country", "1.2.3.6",
+            "{\"traits\":{\"ip_address\":\"1.2.3.6\",\"network\":\"1.2.3.0/24\"}}");
+        client.country(InetAddress.getByName("1.2.3.6"));
+        assertEquals(2, client.queriesSaved());
+
+        var cache = new ResultCache(100, ResultCache.Eviction.LRU);
+        new WebServiceClient.Builder(6, "0123456789").withResultCache(cache).build();
+        assertThrows(IllegalArgumentException.class,
+            () -> new WebServiceClient.Builder(6, "0123456789").withResultCache(cache).build());
+    }
+
+    @Test
+    public void testResultCacheExpires() throws Exception {
+        createSuccessClient("country", "1.2.3.4",
+            "{\"traits\":{\"ip_address\":\"1.2.3.4\",\"network\":\"1.2.3.0/24\"}}");
+        var client = localClientBuilder()
+            .withResultCache(
+                new ResultCache(100, ResultCache.Eviction.LRU, Duration.ofMillis(1)))
+            .build();
+
+        var ipAddress = InetAddress.getByName("1.2.3.4");
+        client.country(ipAddress);
+        Thread.sleep(10);
+        client.country(ipAddress);
+        assertEquals(0, client.queriesSaved());
+        wireMock.verify(2, getRequestedFor(urlEqualTo("/geoip/v2.1/country/1.2.3.4")));
+    }
+
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception {
+        String url = "/geoip/v2.1/insights/1.2.3.4";
+        wireMock.stubFor(get(urlEqualTo(url))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type",
+                    "application/vnd.maxmind.com-insights+json; charset=UTF-8; version=2.1")
+                .withBody("{\"traits\":{\"ip_address\":\"1.2.3.4\"}}")
+                .withFixedDelay(500)));
+        var ipAddress = InetAddress.getByName("1.2.3.4");
+
+        var client = localClientBuilder().coalesceRequests(true).build();
+        var first = client.insightsAsync(ipAddress);
+        var second = client.insightsAsync(ipAddress);
+        var thread = new Thread(() -> {
+            try {
+                client.insights(ipAddress);
+            } catch (IOException | GeoIp2Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(first.get(), second.get());
+        assertEquals(2, client.queriesSaved());
+        wireMock.verify(1, getRequestedFor(urlEqualTo(url)));
+
+        var uncoalesced = localClientBuilder().build();
+        var third = uncoalesced.insightsAsync(ipAddress);
+        var fourth = uncoalesced.insightsAsync(ipAddress);
+        assertEquals(third.get(), fourth.get());
+        assertEquals(0, uncoalesced.queriesSaved());
+        wireMock.verify(3, getRequestedFor(urlEqualTo(url)));
+    }
+
+    @Test
+    public void testCoalescedRequestsShareErrors() throws Exception {
+        String url = "/geoip/v2.1/country/1.2.3.16";
+        wireMock.stubFor(get(urlEqualTo(url))
+            .willReturn(aResponse()
+                .withStatus(404)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"code\":\"IP_ADDRESS_NOT_FOUND\",\"error\":\"not found\"}")
+                .withFixedDelay(500)));
+        var ipAddress = InetAddress.getByName("1.2.3.16");
+
+        var client = localClientBuilder().coalesceRequests(true).build();
+        var first = client.countryAsync(ipAddress);
+        var second = client.countryAsync(ipAddress);
+        var firstCause = assertThrows(ExecutionException.class, first::get).getCause();
+        var secondCause = assertThrows(ExecutionException.class, second::get).getCause();
+        assertTrue(firstCause instanceof AddressNotFoundException);
+        assertTrue(secondCause instanceof AddressNotFoundException);
+        assertEquals("not found", secondCause.getMessage());
+        // Each caller gets its own exception
+        assertNotSame(firstCause, secondCause);
+        assertSame(firstCause, secondCause.getCause());
+        wireMock.verify(1, getRequestedFor(urlEqualTo(url)));
+
+        // The failed request is not reused
+        assertThrows(AddressNotFoundException.class, () -> client.country(ipAddress));
+        wireMock.verify(2, getRequestedFor(urlEqualTo(url)));
+    }
+
+    @Test
+    public void testCoalescedRequestsResentAfterInterrupt() throws Exception {
+        String url = "/geoip/v2.1/city/1.2.3.4";
+        wireMock.stubFor(get(urlEqualTo(url))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type",
+                    "application/vnd.maxmind.com-city+json; charset=UTF-8; version=2.1")
+                .withBody("{\"traits\":{\"ip_address\":\"1.2.3.4\"}}")
+                .withFixedDelay(500)));
+        var ipAddress = InetAddress.getByName("1.2.3.4");
+        var client = localClientBuilder().coalesceRequests(true).build();
+
+        var thread = new Thread(() -> {
+            try {
+                client.city(ipAddress);
+            } catch (IOException | GeoIp2Exception e) {
+                // Expected, as the thread is interrupted
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        var joined = client.cityAsync(ipAddress);
+        thread.interrupt();
+        thread.join();
+
+        // The interrupt of the caller that sent the request is not shared
+        assertEquals("1.2.3.4", joined.get().traits().ipAddress().getHostAddress());
+        wireMock.verify(2, getRequestedFor(urlEqualTo(url)));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        for (var ip : List.of("1.2.3.4", "1.2.3.5", "1.2.3.6")) {
+            wireMock.stubFor(get(urlEqualTo("/geoip/v2.1/country/" + ip))
+                .willReturn(aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type",
+                        "application/vnd.maxmind.com-country+json; charset=UTF-8; version=2.1")
+                    .withBody("{\"traits\":{\"ip_address\":\"" + ip + "\"}}")
+                    .withFixedDelay(300)));
+        }
+        var client = localClientBuilder()
+            .concurrencyLimit(1)
+            .maxQueuedRequests(1)
+            .build();
+
+        var first = client.countryAsync(InetAddress.getByName("1.2.3.4"));
+        var second = client.countryAsync(InetAddress.getByName("1.2.3.5"));
+        var third = client.countryAsync(InetAddress.getByName("1.2.3.6"));
+
+        var stats = client.concurrencyLimitStats().orElseThrow();
+        assertEquals(1, stats.limit());
+        assertEquals(1, stats.inFlight());
+        assertEquals(1, stats.queued());
+        assertEquals(1, stats.rejected());
+
+        var ex = assertThrows(ExecutionException.class, third::get);
+        assertTrue(ex.getCause() instanceof GeoIp2Exception);
+        assertEquals("1.2.3.4", first.get().traits().ipAddress().getHostAddress());
+        assertEquals("1.2.3.5", second.get().traits().ipAddress().getHostAddress());
+        wireMock.verify(0, getRequestedFor(urlEqualTo("/geoip/v2.1/country/1.2.3.6")));
+
+        stats = client.concurrencyLimitStats().orElseThrow();
+        assertEquals(0, stats.inFlight());
+        assertEquals(0, stats.queued());
+
+        assertFalse(new WebServiceClient.Builder(6, "0123456789").build()
+            .concurrencyLimitStats().isPresent());
+        assertThrows(IllegalArgumentException.class,
+            () -> new WebServiceClient.Builder(6, "0123456789").concurrencyLimit(0));
+    }
+
+    @Test
+    public void testConcurrencyLimitBacksOffOnServerErrors() throws Exception {
+        createClient("insights", "1.2.3.4", 503, "application/json", "");
+        var client = localClientBuilder()
+            .concurrencyLimit(10)
+            .build();
+
+        assertThrows(HttpException.class,
+            () -> client.insights(InetAddress.getByName("1.2.3.4")));
+        var stats = client.concurrencyLimitStats().orElseThrow();
+        assertEquals(9, stats.limit());
+        assertEquals(10, stats.maxLimit());
+        assertEquals(0, stats.inFlight());
+    }
+
     @Test
     public void testAddressNotFound() throws Exception {
         Exception ex = assertThrows(AddressNotFoundException.class,
@@ -414,11 +663,14 @@ public class WebServiceClientTest {
                 .withHeader("Content-Type", contentType)
                 .withBody(body)));
 
+        return localClientBuilder().build();
+    }
+
+    private static WebServiceClient.Builder localClientBuilder() {
         return new WebServiceClient.Builder(6, "0123456789")
             .host("localhost")
             .port(wireMock.getPort())
-            .disableHttps()
-            .build();
+            .disableHttps();
     }
 
     @Test
@@ -565,6 +817,38 @@ public class WebServiceClientTest {
         wireMock.verify(2, getRequestedFor(urlEqualTo(url)));
     }
 
+    @Test
+    public void testAsyncRetriesOnConnectionReset() throws Exception {
+        String url = "/geoip/v2.1/insights/1.2.3.4";
+        String body = "{\"traits\":{\"ip_address\":\"1.2.3.4\"}}";
+
+        wireMock.stubFor(get(urlEqualTo(url))
+            .inScenario("retry-insights-async")
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER))
+            .willSetStateTo("succeeded"));
+
+        wireMock.stubFor(get(urlEqualTo(url))
+            .inScenario("retry-insights-async")
+            .whenScenarioStateIs("succeeded")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type",
+                    "application/vnd.maxmind.com-insights+json; charset=UTF-8; version=2.1")
+                .withBody(body)));
+
+        WebServiceClient client = new WebServiceClient.Builder(6, "0123456789")
+            .host("localhost")
+            .port(wireMock.getPort())
+            .disableHttps()
+            .build();
+
+        InsightsResponse response = client.insightsAsync(InetAddress.getByName("1.2.3.4")).get();
+        assertNotNull(response);
+
+        wireMock.verify(2, getRequestedFor(urlEqualTo(url)));
+    }
+
     @Test
     public void testNoRetryOnHttpTimeoutException() {
         String url = "/geoip/v2.1/insights/1.2.3.4";
@@ -13,11 +13,15 @@ import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import com.maxmind.geoip2.WebServiceClient;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
+import com.maxmind.geoip2.record.City;
+import com.maxmind.geoip2.record.Subdivision;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -105,6 +109,35 @@ public class CityResponseTest {
 
     }
 
+    @Test
+    public void testNameFallbackOrder() {
+        var names = Map.of("de", "München", "en", "Munich", "fr", "Munich (fr)");
+
+        assertEquals(
+            "Munich (fr)",
+            new City(List.of("fr", "de", "en"), null, 2867714L, names).name(),
+            "the first available locale is used"
+        );
+        assertEquals(
+            "München",
+            new City(List.of("pt", "de", "en"), null, 2867714L, names).name(),
+            "later locales are tried in order"
+        );
+        assertEquals(
+            "Munich",
+            new Subdivision(List.of("ja", "en"), null, 2951839L, "BY", names).name(),
+            "the last locale is used when it is the only one available"
+        );
+        assertNull(
+            new City(List.of("pt", "es"), null, 2867714L, names).name(),
+            "null is returned when no locale is available"
+        );
+        assertNull(
+            new City(List.of("en"), null, null, null).name(),
+            "null is returned when there are no names"
+        );
+    }
+
     @Test
     public void noFallback() throws Exception {
         WebServiceClient client = new WebServiceClient.Builder(42,